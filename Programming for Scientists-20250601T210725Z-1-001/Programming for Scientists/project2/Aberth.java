@@ -0,0 +1,177 @@
+/*
+ * PROJECT II: Aberth.java
+ *
+ * This class finds all of the roots of a Polynomial at once using the
+ * Aberth-Ehrlich method. Each approximation z_k is updated by
+ *
+ *   z_k <- z_k - w_k,  w_k = N_k / (1 - N_k S_k),
+ *
+ * where N_k = P(z_k)/P'(z_k) is the Newton correction and
+ * S_k = sum_{j != k} 1/(z_k - z_j) repels z_k from the other
+ * approximations. This is the Durand-Kerner idea with the Newton correction
+ * built in, and converges cubically to simple roots from any reasonable
+ * starting configuration. Since the method never deflates, each root is
+ * finally polished with Newton-Raphson on the original polynomial.
+ */
+
+class Aberth {
+    /**
+     * The maximum number of simultaneous Aberth sweeps.
+     */
+    public static final int MAXITER = 200;
+
+    /**
+     * Relative size of a correction below which an approximation is
+     * considered to have converged.
+     */
+    public static final double EPS = 1.0e-15;
+
+    /**
+     * Number of Newton-Raphson steps used to polish each root.
+     */
+    public static final int POLISH = 3;
+
+    /**
+     * Computes all degree() roots of the polynomial p, repeated according to
+     * multiplicity. The order of the returned roots depends only on p.
+     *
+     * @param p  The polynomial whose roots should be found.
+     * @return   An array holding the p.degree() roots of p.
+     */
+    public static Complex[] roots(Polynomial p) {
+	int n = p.degree();
+	if (n == 0) {
+	    return new Complex[0];
+	}
+
+	double[] zr = new double[n], zi = new double[n];
+	initialGuesses(p, zr, zi);
+
+	// Gauss-Seidel style sweeps: updated approximations are used
+	// immediately for the remaining roots.
+	double[] t = new double[4];
+	boolean[] done = new boolean[n];
+	int remaining = n;
+	for (int it = 0; it < MAXITER && remaining > 0; it++) {
+	    for (int k = 0; k < n; k++) {
+		if (done[k]) {
+		    continue;
+		}
+		p.taylor(zr[k], zi[k], 1, t);
+		double fr = t[0], fi = t[1], pr = t[2], pi = t[3];
+		if (fr == 0 && fi == 0) {
+		    done[k] = true;
+		    remaining--;
+		    continue;
+		}
+		double mod2 = pr*pr + pi*pi;
+		if (mod2 == 0) {
+		    // Nudge off a critical point and try again next sweep.
+		    zr[k] += EPS * (1.0 + Math.abs(zr[k]));
+		    continue;
+		}
+
+		// Newton correction N = P/P'.
+		double nr = (fr*pr + fi*pi)/mod2, ni = (fi*pr - fr*pi)/mod2;
+
+		// S = sum 1/(z_k - z_j).
+		double sr = 0.0, si = 0.0;
+		for (int j = 0; j < n; j++) {
+		    if (j != k) {
+			double dr = zr[k] - zr[j], di = zi[k] - zi[j];
+			double d2 = dr*dr + di*di;
+			sr += dr/d2;
+			si -= di/d2;
+		    }
+		}
+
+		// w = N / (1 - N S).
+		double br = 1.0 - (nr*sr - ni*si), bi = -(nr*si + ni*sr);
+		double b2 = br*br + bi*bi;
+		double wr = (nr*br + ni*bi)/b2, wi = (ni*br - nr*bi)/b2;
+		zr[k] -= wr;
+		zi[k] -= wi;
+
+		if (Math.hypot(wr, wi) <= EPS * Math.hypot(zr[k], zi[k])) {
+		    done[k] = true;
+		    remaining--;
+		}
+	    }
+	}
+
+	Complex[] roots = new Complex[n];
+	for (int k = 0; k < n; k++) {
+	    polish(p, zr, zi, k, t);
+	    roots[k] = new Complex(zr[k], zi[k]);
+	}
+	return roots;
+    }
+
+    /**
+     * Places the initial approximations on a circle centred on the centroid
+     * of the roots, -a_{n-1}/(n a_n), whose radius is the geometric mean of
+     * the root moduli about that centre estimated from |P(c)/a_n|. The angles
+     * are offset so that the configuration is not symmetric under
+     * conjugation.
+     */
+    private static void initialGuesses(Polynomial p, double[] zr, double[] zi) {
+	int n = zr.length;
+	double[] aRe = p.realCoeffs(), aIm = p.imagCoeffs();
+	double ar = aRe[n], ai = aIm[n], a2 = ar*ar + ai*ai;
+	double br = aRe[n-1], bi = aIm[n-1];
+	double cr = -(br*ar + bi*ai)/(n*a2), ci = -(bi*ar - br*ai)/(n*a2);
+
+	double[] t = new double[4];
+	p.taylor(cr, ci, 0, t);
+	double r = Math.pow(Math.hypot(t[0], t[1]) / Math.sqrt(a2), 1.0/n);
+	if (!(r > 0) || Double.isInfinite(r)) {
+	    r = 1.0;
+	}
+
+	for (int k = 0; k < n; k++) {
+	    double theta = 2*Math.PI*k/n + 0.4;
+	    zr[k] = cr + r*Math.cos(theta);
+	    zi[k] = ci + r*Math.sin(theta);
+	}
+    }
+
+    /**
+     * Applies up to POLISH Newton-Raphson steps to root k against the
+     * original polynomial, keeping a step only if it reduces |P|.
+     */
+    private static void polish(Polynomial p, double[] zr, double[] zi, int k, double[] t) {
+	p.taylor(zr[k], zi[k], 1, t);
+	double res = Math.hypot(t[0], t[1]);
+	for (int s = 0; s < POLISH && res > 0; s++) {
+	    double mod2 = t[2]*t[2] + t[3]*t[3];
+	    if (mod2 == 0) {
+		return;
+	    }
+	    double wr = zr[k] - (t[0]*t[2] + t[1]*t[3])/mod2;
+	    double wi = zi[k] - (t[1]*t[2] - t[0]*t[3])/mod2;
+	    p.taylor(wr, wi, 1, t);
+	    double newRes = Math.hypot(t[0], t[1]);
+	    if (!(newRes < res)) {
+		return;
+	    }
+	    zr[k] = wr;
+	    zi[k] = wi;
+	    res   = newRes;
+	}
+    }
+
+    // ========================================================
+    // Tester function.
+    // ========================================================
+
+    public static void main(String[] args) {
+	Complex[] coeff = new Complex[] { new Complex(1.0,0.0), new Complex(3.0,0.0),
+					  new Complex(-5.0,-2.0), new Complex(0.0,-3.0),
+					  new Complex(0.0,0.0), new Complex(1.0,0.0) };
+	Polynomial p = new Polynomial(coeff);
+	System.out.println("Polynomial: " +p);
+	for (Complex z : roots(p)) {
+	    System.out.println("Root " +z+ ",  |P| = " +p.evaluate(z).abs());
+	}
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * PROJECT II: CompiledPolynomial.java
+ *
+ * Polynomial.evaluate() and Polynomial.taylor() are general loops whose trip
+ * count depends on the polynomial, and Horner's rule is a single chain of
+ * dependent multiply-adds. A CompiledPolynomial is an evaluator specialised
+ * to one fixed set of co-efficients, created once by compile() and then
+ * called many times (e.g. in the inner loop of Newton):
+ *
+ *   - Below degree ESTRIN the polynomial is simply passed on to
+ *     Polynomial.taylor(), whose Horner loop is hard to beat there: neither
+ *     an unrolled copy of it (even one holding the co-efficients as
+ *     constants of a hidden class) nor Estrin's scheme was faster in
+ *     measurements, since the extra code keeps the evaluator from being
+ *     inlined.
+ *   - From degree ESTRIN on, Estrin's scheme is used: the co-efficients are
+ *     split into blocks of eight, each evaluated as
+ *       ((c0 + c1 z) + (c2 + c3 z) z^2) + ((c4 + c5 z) + (c6 + c7 z) z^2) z^4
+ *     whose products are independent of each other, and the blocks are
+ *     combined by Horner's rule in z^8. This exposes instruction-level
+ *     parallelism that Horner's rule lacks.
+ *   - Sparse polynomials (see Polynomial.terms) are already evaluated term
+ *     by term, and are also passed on to Polynomial.taylor().
+ *
+ * Building an Estrin evaluator compiles the derivative as well, so
+ * evaluators are kept in a small cache keyed by the co-efficients, and the
+ * many Newton objects created for one polynomial (e.g. one per tile) share
+ * a single evaluator.
+ */
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+abstract class CompiledPolynomial {
+    /**
+     * The lowest degree for which Estrin's scheme is used; below it
+     * Polynomial.taylor() is faster.
+     */
+    public static final int ESTRIN = 32;
+
+    /**
+     * The number of Estrin evaluators kept in the cache.
+     */
+    private static final int CACHED = 64;
+
+    /**
+     * The cache of Estrin evaluators, by the bits of the co-efficients, in
+     * access order so that the least recently used one is evicted first.
+     */
+    private static final LinkedHashMap<Coefficients, CompiledPolynomial> cache =
+	new LinkedHashMap<Coefficients, CompiledPolynomial>(16, 0.75f, true) {
+	    private static final long serialVersionUID = 1L;
+
+	    protected boolean removeEldestEntry(Map.Entry<Coefficients, CompiledPolynomial> eldest) {
+		return size() > CACHED;
+	    }
+	};
+
+    /**
+     * Creates the fastest evaluator for the polynomial p.
+     *
+     * @param p  The polynomial to compile.
+     * @return   An evaluator for p.
+     */
+    public static CompiledPolynomial compile(Polynomial p) {
+	if (p.isSparse() || p.degree() < ESTRIN) {
+	    return new Direct(p);
+	}
+	Coefficients key = new Coefficients(p.realCoeffs(), p.imagCoeffs());
+	synchronized (cache) {
+	    CompiledPolynomial cp = cache.get(key);
+	    if (cp != null) {
+		return cp;
+	    }
+	}
+	// Built outside the lock: two threads may both build it, but the
+	// evaluators are the same.
+	CompiledPolynomial cp = new Estrin(p);
+	synchronized (cache) {
+	    cache.put(key, cp);
+	}
+	return cp;
+    }
+
+    /**
+     * The co-efficients of a polynomial as a cache key, compared bit for bit
+     * (so that 0.0 and -0.0 differ, as they may in the results).
+     */
+    private static final class Coefficients {
+	private final long[] bits;
+	private final int hash;
+
+	Coefficients(double[] re, double[] im) {
+	    bits = new long[re.length + im.length];
+	    for (int i = 0; i < re.length; i++) {
+		bits[2*i]   = Double.doubleToRawLongBits(re[i]);
+		bits[2*i+1] = Double.doubleToRawLongBits(im[i]);
+	    }
+	    hash = Arrays.hashCode(bits);
+	}
+
+	public boolean equals(Object o) {
+	    return o instanceof Coefficients && Arrays.equals(bits, ((Coefficients) o).bits);
+	}
+
+	public int hashCode() {
+	    return hash;
+	}
+    }
+
+    /**
+     * Evaluates the polynomial at z = re + i*im, writing P(z) to out[0]
+     * and out[1].
+     *
+     * @param re   Real part of z.
+     * @param im   Imaginary part of z.
+     * @param out  Buffer of length at least 2.
+     */
+    public abstract void evaluate(double re, double im, double[] out);
+
+    /**
+     * Evaluates the polynomial and its derivative at z = re + i*im, writing
+     * P(z) to out[0], out[1] and P'(z) to out[2], out[3] (as
+     * Polynomial.taylor() with k = 1).
+     *
+     * @param re   Real part of z.
+     * @param im   Imaginary part of z.
+     * @param out  Buffer of length at least 4.
+     */
+    public abstract void evaluateWithDerivative(double re, double im, double[] out);
+
+    // ========================================================
+    // Estrin's scheme.
+    // ========================================================
+
+    private static final class Estrin extends CompiledPolynomial {
+	private final int blocks;
+	private final double[] cr, ci;
+	private final CompiledPolynomial derivative;
+
+	Estrin(Polynomial p) {
+	    int len = p.degree() + 1;
+	    blocks = (len + 7) / 8;
+	    cr = Arrays.copyOf(p.realCoeffs(), 8*blocks);
+	    ci = Arrays.copyOf(p.imagCoeffs(), 8*blocks);
+	    derivative = compile(p.derivative());
+	}
+
+	public void evaluate(double re, double im, double[] out) {
+	    double z2r = re*re - im*im,     z2i = 2*re*im;
+	    double z4r = z2r*z2r - z2i*z2i, z4i = 2*z2r*z2i;
+	    double z8r = z4r*z4r - z4i*z4i, z8i = 2*z4r*z4i;
+	    double pr = 0.0, pi = 0.0;
+	    for (int j = 8*(blocks - 1); j >= 0; j -= 8) {
+		// q_k = c_2k + c_2k+1 z.
+		double q0r = cr[j]   + (re*cr[j+1] - im*ci[j+1]), q0i = ci[j]   + (re*ci[j+1] + im*cr[j+1]);
+		double q1r = cr[j+2] + (re*cr[j+3] - im*ci[j+3]), q1i = ci[j+2] + (re*ci[j+3] + im*cr[j+3]);
+		double q2r = cr[j+4] + (re*cr[j+5] - im*ci[j+5]), q2i = ci[j+4] + (re*ci[j+5] + im*cr[j+5]);
+		double q3r = cr[j+6] + (re*cr[j+7] - im*ci[j+7]), q3i = ci[j+6] + (re*ci[j+7] + im*cr[j+7]);
+
+		// r_0 = q_0 + q_1 z^2, r_1 = q_2 + q_3 z^2.
+		double r0r = q0r + (z2r*q1r - z2i*q1i), r0i = q0i + (z2r*q1i + z2i*q1r);
+		double r1r = q2r + (z2r*q3r - z2i*q3i), r1i = q2i + (z2r*q3i + z2i*q3r);
+
+		// p <- p z^8 + (r_0 + r_1 z^4).
+		double br = r0r + (z4r*r1r - z4i*r1i), bi = r0i + (z4r*r1i + z4i*r1r);
+		double t  = pr*z8r - pi*z8i + br;
+		pi = pr*z8i + pi*z8r + bi;
+		pr = t;
+	    }
+	    out[0] = pr;
+	    out[1] = pi;
+	}
+
+	public void evaluateWithDerivative(double re, double im, double[] out) {
+	    derivative.evaluate(re, im, out);
+	    out[2] = out[0];
+	    out[3] = out[1];
+	    evaluate(re, im, out);
+	}
+    }
+
+    // ========================================================
+    // Low degree and sparse polynomials.
+    // ========================================================
+
+    private static final class Direct extends CompiledPolynomial {
+	private final Polynomial p;
+
+	Direct(Polynomial p) {
+	    this.p = p;
+	}
+
+	public void evaluate(double re, double im, double[] out) {
+	    p.taylor(re, im, 0, out);
+	}
+
+	public void evaluateWithDerivative(double re, double im, double[] out) {
+	    p.taylor(re, im, 1, out);
+	}
+    }
+
+    // ========================================================
+    // Tester function.
+    // ========================================================
+
+    public static void main(String[] args) {
+	// Compare against Polynomial.taylor() for random polynomials.
+	Random rand = new Random(1);
+	int[] degrees = { 5, 8, 40, 200 };
+	double[] a = new double[4], b = new double[4];
+	for (int n : degrees) {
+	    Complex[] c = new Complex[n + 1];
+	    for (int i = 0; i <= n; i++) {
+		c[i] = new Complex(rand.nextGaussian(), rand.nextGaussian());
+	    }
+	    Polynomial p = new Polynomial(c);
+	    CompiledPolynomial cp = compile(p);
+
+	    double err = 0.0, sink = 0.0;
+	    for (int k = 0; k < 1000; k++) {
+		double re = rand.nextDouble() - 0.5, im = rand.nextDouble() - 0.5;
+		p.taylor(re, im, 1, a);
+		cp.evaluateWithDerivative(re, im, b);
+		err = Math.max(err, Math.hypot(a[0] - b[0], a[1] - b[1]) + Math.hypot(a[2] - b[2], a[3] - b[3]));
+	    }
+
+	    int reps = 20000000 / (n + 1);
+	    for (int warm = 0; warm < 2; warm++) {
+		long t0 = System.nanoTime();
+		for (int k = 0; k < reps; k++) {
+		    p.taylor(0.3 + 1e-9*k, 0.2, 1, a);
+		    sink += a[0];
+		}
+		long t1 = System.nanoTime();
+		for (int k = 0; k < reps; k++) {
+		    cp.evaluateWithDerivative(0.3 + 1e-9*k, 0.2, b);
+		    sink += b[0];
+		}
+		long t2 = System.nanoTime();
+		if (warm == 1) {
+		    System.out.println(String.format("degree %3d  taylor %6.1f ns  compiled %6.1f ns  max diff %.1e  (%s)",
+						     n, (t1 - t0)/(double)reps, (t2 - t1)/(double)reps,
+						     err, cp.getClass().getSimpleName()));
+		}
+	    }
+	    if (sink == 42) {
+		System.out.println();
+	    }
+	}
+
+	// A second compile of equal co-efficients comes from the cache.
+	Complex[] c = new Complex[41];
+	for (int i = 0; i <= 40; i++) {
+	    c[i] = new Complex(i, -i);
+	}
+	System.out.println("Cached: " +(compile(new Polynomial(c)) == compile(new Polynomial(c.clone()))));
+    }
+}
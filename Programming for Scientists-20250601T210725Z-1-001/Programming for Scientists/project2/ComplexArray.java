@@ -0,0 +1,316 @@
+/*
+ * PROJECT II: ComplexArray.java
+ *
+ * This class implements a packed array of complex numbers. Rather than an
+ * array of references to Complex objects, each scattered over the heap, the
+ * real and imaginary parts are held in two contiguous double[] arrays
+ * (struct-of-arrays), the layout already used internally by Polynomial,
+ * Multipoint and NewtonBatch.
+ *
+ * Elements are read and written through getReal(), getImag() and set(),
+ * which do not allocate, and whole arrays are combined by bulk operations
+ * (add, multiply, divide, conjugate, axpy, abs2). These are written as
+ * simple branch-free loops over the two arrays, which HotSpot's superword
+ * optimisation turns into SIMD code.
+ */
+
+final class ComplexArray {
+    /**
+     * Real and imaginary parts of the elements.
+     */
+    private final double[] re, im;
+
+    // ========================================================
+    // Constructor functions.
+    // ========================================================
+
+    /**
+     * Constructor: creates an array of n zeros.
+     *
+     * @param n  The number of elements.
+     */
+    public ComplexArray(int n) {
+	this(new double[n], new double[n]);
+    }
+
+    /**
+     * Constructor: wraps the given arrays of real and imaginary parts, which
+     * are used (and modified) directly rather than copied.
+     *
+     * @param re  Real parts of the elements.
+     * @param im  Imaginary parts of the elements.
+     */
+    public ComplexArray(double[] re, double[] im) {
+	if (re.length != im.length) {
+	    throw new RuntimeException("Real and imaginary parts must have the same length!");
+	}
+	this.re = re;
+	this.im = im;
+    }
+
+    /**
+     * Constructor: copies the values of an array of Complex objects.
+     *
+     * @param z  The complex numbers to copy.
+     */
+    public ComplexArray(Complex[] z) {
+	this(z.length);
+	for (int k = 0; k < z.length; k++) {
+	    re[k] = z[k].getReal();
+	    im[k] = z[k].getImag();
+	}
+    }
+
+    // ========================================================
+    // Accessor and mutator methods.
+    // ========================================================
+
+    /**
+     * Returns the number of elements.
+     */
+    public int length() {
+	return re.length;
+    }
+
+    /**
+     * Accessor Method: get the real part of element k.
+     */
+    public double getReal(int k) {
+	return re[k];
+    }
+
+    /**
+     * Accessor Method: get the imaginary part of element k.
+     */
+    public double getImag(int k) {
+	return im[k];
+    }
+
+    /**
+     * Mutator Method: set element k to x+iy.
+     */
+    public void set(int k, double x, double y) {
+	re[k] = x;
+	im[k] = y;
+    }
+
+    /**
+     * Returns element k as a new Complex. Loops over the array should prefer
+     * getReal() and getImag(), which do not allocate.
+     */
+    public Complex get(int k) {
+	return new Complex(re[k], im[k]);
+    }
+
+    /**
+     * Returns the backing array of real parts, so that kernels can work on
+     * it directly. Changes to it change this array.
+     */
+    public double[] real() {
+	return re;
+    }
+
+    /**
+     * Returns the backing array of imaginary parts; see real().
+     */
+    public double[] imag() {
+	return im;
+    }
+
+    /**
+     * Copies the elements to an array of Complex objects.
+     *
+     * @return A new array holding the same values.
+     */
+    public Complex[] toComplex() {
+	Complex[] z = new Complex[re.length];
+	for (int k = 0; k < z.length; k++) {
+	    z[k] = new Complex(re[k], im[k]);
+	}
+	return z;
+    }
+
+    /**
+     * Returns a copy of this array.
+     */
+    public ComplexArray copy() {
+	return new ComplexArray(re.clone(), im.clone());
+    }
+
+    /**
+     * Converts the array to a string, listing its elements as Complex does.
+     */
+    public String toString() {
+	StringBuilder s = new StringBuilder("[");
+	for (int k = 0; k < re.length; k++) {
+	    if (k > 0) {
+		s.append(", ");
+	    }
+	    s.append(get(k));
+	}
+	return s.append("]").toString();
+    }
+
+    // ========================================================
+    // Bulk operations. Each updates this array in place and
+    // returns it, so that operations may be chained.
+    // ========================================================
+
+    /**
+     * Checks that b has the same length as this array.
+     */
+    private void check(ComplexArray b) {
+	if (b.re.length != re.length) {
+	    throw new RuntimeException("Complex arrays must have the same length!");
+	}
+    }
+
+    /**
+     * Adds b to this array elementwise.
+     *
+     * @param b  The array to add.
+     * @return   This array.
+     */
+    public ComplexArray add(ComplexArray b) {
+	check(b);
+	double[] bRe = b.re, bIm = b.im;
+	for (int k = 0; k < re.length; k++) {
+	    re[k] += bRe[k];
+	    im[k] += bIm[k];
+	}
+	return this;
+    }
+
+    /**
+     * Multiplies this array elementwise by b.
+     *
+     * @param b  The array to multiply by.
+     * @return   This array.
+     */
+    public ComplexArray multiply(ComplexArray b) {
+	check(b);
+	double[] bRe = b.re, bIm = b.im;
+	for (int k = 0; k < re.length; k++) {
+	    double x = re[k], y = im[k], p = bRe[k], q = bIm[k];
+	    re[k] = x*p - y*q;
+	    im[k] = x*q + y*p;
+	}
+	return this;
+    }
+
+    /**
+     * Multiplies every element of this array by the constant alpha = ar+i*ai.
+     *
+     * @param ar  Real part of alpha.
+     * @param ai  Imaginary part of alpha.
+     * @return    This array.
+     */
+    public ComplexArray multiply(double ar, double ai) {
+	for (int k = 0; k < re.length; k++) {
+	    double x = re[k], y = im[k];
+	    re[k] = x*ar - y*ai;
+	    im[k] = x*ai + y*ar;
+	}
+	return this;
+    }
+
+    /**
+     * Divides this array elementwise by b, as Complex.divide() does. Division
+     * by zero gives infinities or NaNs rather than an exception, so that the
+     * loop stays branch-free.
+     *
+     * @param b  The array to divide by.
+     * @return   This array.
+     */
+    public ComplexArray divide(ComplexArray b) {
+	check(b);
+	double[] bRe = b.re, bIm = b.im;
+	for (int k = 0; k < re.length; k++) {
+	    double x = re[k], y = im[k], p = bRe[k], q = bIm[k];
+	    double inv = 1/(p*p + q*q);
+	    re[k] = (x*p + y*q)*inv;
+	    im[k] = (y*p - x*q)*inv;
+	}
+	return this;
+    }
+
+    /**
+     * Replaces every element by its conjugate.
+     *
+     * @return This array.
+     */
+    public ComplexArray conjugate() {
+	for (int k = 0; k < im.length; k++) {
+	    im[k] = -im[k];
+	}
+	return this;
+    }
+
+    /**
+     * Adds alpha*x to this array, where alpha = ar+i*ai is a constant (the
+     * BLAS operation axpy).
+     *
+     * @param ar  Real part of alpha.
+     * @param ai  Imaginary part of alpha.
+     * @param x   The array to scale and add.
+     * @return    This array.
+     */
+    public ComplexArray axpy(double ar, double ai, ComplexArray x) {
+	check(x);
+	double[] xRe = x.re, xIm = x.im;
+	for (int k = 0; k < re.length; k++) {
+	    double p = xRe[k], q = xIm[k];
+	    re[k] += ar*p - ai*q;
+	    im[k] += ar*q + ai*p;
+	}
+	return this;
+    }
+
+    /**
+     * Computes the squared absolute values |z_k|^2 of the elements.
+     *
+     * @param out  Receives the squared absolute values; must have length at
+     *             least length().
+     * @return     out.
+     */
+    public double[] abs2(double[] out) {
+	for (int k = 0; k < re.length; k++) {
+	    out[k] = re[k]*re[k] + im[k]*im[k];
+	}
+	return out;
+    }
+
+    // ========================================================
+    // Tester function.
+    // ========================================================
+
+    public static void main(String[] args) {
+	ComplexArray a = new ComplexArray(new Complex[] { new Complex(1.0, 1.0), new Complex(0.0, 2.0),
+							  new Complex(3.0, -4.0) });
+	ComplexArray b = new ComplexArray(new Complex[] { new Complex(2.0, 0.0), new Complex(1.0, 1.0),
+							  new Complex(3.0, 4.0) });
+	System.out.println("a =          " +a);
+	System.out.println("b =          " +b);
+	System.out.println("a + b =      " +a.copy().add(b));
+	System.out.println("a * b =      " +a.copy().multiply(b));
+	System.out.println("a / b =      " +a.copy().divide(b));
+	System.out.println("conj(a) =    " +a.copy().conjugate());
+	System.out.println("a + i*b =    " +a.copy().axpy(0.0, 1.0, b));
+	System.out.println("|a|^2 =      " +java.util.Arrays.toString(a.abs2(new double[a.length()])));
+
+	// Agreement of the bulk product with Complex.multiply().
+	int n = 1 << 16;
+	ComplexArray x = new ComplexArray(n), y = new ComplexArray(n);
+	for (int k = 0; k < n; k++) {
+	    x.set(k, Math.cos(k), Math.sin(k));
+	    y.set(k, 1.0/(k+1), k % 7 - 3.0);
+	}
+	ComplexArray xy = x.copy().multiply(y);
+	double maxErr = 0.0;
+	for (int k = 0; k < n; k++) {
+	    Complex z = x.get(k).multiply(y.get(k));
+	    maxErr = Math.max(maxErr, Math.abs(z.getReal() - xy.getReal(k)) + Math.abs(z.getImag() - xy.getImag(k)));
+	}
+	System.out.println("Max error of bulk multiply: " +maxErr);
+    }
+}
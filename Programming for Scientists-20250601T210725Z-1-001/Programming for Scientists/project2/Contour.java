@@ -0,0 +1,293 @@
+/*
+ * PROJECT II: Contour.java
+ *
+ * This class counts and finds the roots of a Polynomial inside rectangles
+ * of the complex plane using the argument principle: the number of zeros of
+ * P inside a closed contour C (counted with multiplicity) is the winding
+ * number of P(z) about 0 as z goes once around C,
+ *
+ *   N = (1 / 2 pi) [arg P(z)]_C.
+ *
+ * The change in argument is accumulated along each edge of the rectangle
+ * from samples of P. Between neighbouring samples the increment is taken to
+ * be the principal value of arg(P(b)/P(a)), which is only correct if the
+ * true change is less than pi. Segments are therefore bisected until both
+ * that increment and the bound |P'/P| * length on the true change are at
+ * most MAXPHASE. A segment that cannot be resolved this way passes
+ * (numerically) through a root.
+ *
+ * On top of the count, roots() performs a quadtree search: rectangles with
+ * no roots are discarded, rectangles with one root are handed to
+ * Newton-Raphson from their centre, and the rest are split into quarters.
+ * Multiple roots can only be located as far as the precision of P allows,
+ * and are returned as repeated approximations.
+ */
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+class Contour {
+    /**
+     * The largest increment in the argument of P accepted between two
+     * neighbouring samples on the contour.
+     */
+    public static final double MAXPHASE = 0.5;
+
+    /**
+     * Number of segments each edge is divided into before any adaptive
+     * refinement.
+     */
+    public static final int SEGMENTS = 8;
+
+    /**
+     * Relative length of a contour segment below which it is not bisected
+     * any further; a segment which is still unresolved is taken to pass
+     * through a root.
+     */
+    public static final double MINLENGTH = 1.0e-12;
+
+    /**
+     * Relative size of a rectangle below which roots() stops subdividing and
+     * reports its centre as a (multiple) root.
+     */
+    public static final double MINSIZE = 1.0e-10;
+
+    /**
+     * Number of times roots() moves the point at which a rectangle is split
+     * when a root lies on one of the new edges.
+     */
+    public static final int RETRIES = 4;
+
+    // ========================================================
+    // Root counting.
+    // ========================================================
+
+    /**
+     * Counts the zeros of p, with multiplicity, in the rectangle with
+     * opposite corners x0+i*y0 and x1+i*y1.
+     *
+     * @param p   The polynomial.
+     * @param x0  Real part of one corner.
+     * @param y0  Imaginary part of one corner.
+     * @param x1  Real part of the opposite corner.
+     * @param y1  Imaginary part of the opposite corner.
+     * @return    The number of zeros inside the rectangle, or -1 if a zero
+     *            lies on (or too close to) its boundary.
+     */
+    public static int count(Polynomial p, double x0, double y0, double x1, double y1) {
+	if (p.degree() == 0) {
+	    return 0;
+	}
+	double lo = Math.min(x0, x1), hi = Math.max(x0, x1);
+	double bot = Math.min(y0, y1), top = Math.max(y0, y1);
+	double scale = Math.max(Math.max(hi - lo, top - bot),
+				Math.max(Math.max(Math.abs(lo), Math.abs(hi)),
+					 Math.max(Math.abs(bot), Math.abs(top))));
+	double minLength = MINLENGTH * scale;
+
+	// Anticlockwise: bottom, right, top, left.
+	double[] cx = { lo, hi, hi, lo, lo };
+	double[] cy = { bot, bot, top, top, bot };
+	double[] t  = new double[4];
+	double total = 0.0;
+	for (int e = 0; e < 4; e++) {
+	    double ar = cx[e], ai = cy[e];
+	    double dr = (cx[e+1] - ar) / SEGMENTS, di = (cy[e+1] - ai) / SEGMENTS;
+	    p.taylor(ar, ai, 1, t);
+	    double fr = t[0], fi = t[1], fk = rate(t);
+	    for (int s = 1; s <= SEGMENTS; s++) {
+		double br = s == SEGMENTS ? cx[e+1] : ar + s*dr;
+		double bi = s == SEGMENTS ? cy[e+1] : ai + s*di;
+		p.taylor(br, bi, 1, t);
+		double gr = t[0], gi = t[1], gk = rate(t);
+		double phase = winding(p, ar + (s-1)*dr, ai + (s-1)*di, fr, fi, fk,
+				       br, bi, gr, gi, gk, minLength, t);
+		if (Double.isNaN(phase)) {
+		    return -1;
+		}
+		total += phase;
+		fr = gr;
+		fi = gi;
+		fk = gk;
+	    }
+	}
+	return (int) Math.round(total / (2*Math.PI));
+    }
+
+    /**
+     * Returns |P'/P| from the values P, P' held in t[0..3]. This bounds the
+     * rate at which the argument of P turns as z moves, and is infinite at a
+     * root.
+     */
+    private static double rate(double[] t) {
+	return Math.sqrt((t[2]*t[2] + t[3]*t[3]) / (t[0]*t[0] + t[1]*t[1]));
+    }
+
+    /**
+     * Returns the change in the argument of P along the segment from a to b,
+     * where f = P(a), g = P(b) and fk, gk are the values of |P'/P| there.
+     * The segment is bisected until the increment is at most MAXPHASE, and
+     * also until |P'/P| times its length is: a root close to the segment
+     * turns the argument through nearly 2 pi over a short distance, which
+     * the end points alone may not reveal.
+     *
+     * @return The change in argument, or NaN if the segment passes through
+     *         a root.
+     */
+    private static double winding(Polynomial p, double ar, double ai, double fr, double fi, double fk,
+				  double br, double bi, double gr, double gi, double gk,
+				  double minLength, double[] t) {
+	if ((fr == 0 && fi == 0) || (gr == 0 && gi == 0)) {
+	    return Double.NaN;
+	}
+	// arg(g / f) = arg(g conj(f)).
+	double phase  = Math.atan2(gi*fr - gr*fi, gr*fr + gi*fi);
+	double length = Math.hypot(br - ar, bi - ai);
+	if (Math.abs(phase) <= MAXPHASE && Math.max(fk, gk) * length <= MAXPHASE) {
+	    return phase;
+	}
+	if (length < minLength) {
+	    return Double.NaN;
+	}
+	double mr = 0.5*(ar + br), mi = 0.5*(ai + bi);
+	p.taylor(mr, mi, 1, t);
+	double hr = t[0], hi = t[1], hk = rate(t);
+	double left = winding(p, ar, ai, fr, fi, fk, mr, mi, hr, hi, hk, minLength, t);
+	if (Double.isNaN(left)) {
+	    return left;
+	}
+	return left + winding(p, mr, mi, hr, hi, hk, br, bi, gr, gi, gk, minLength, t);
+    }
+
+    // ========================================================
+    // Quadtree root search.
+    // ========================================================
+
+    /**
+     * Finds the zeros of p, with multiplicity, in the rectangle with
+     * opposite corners x0+i*y0 and x1+i*y1.
+     *
+     * @param p   The polynomial.
+     * @param x0  Real part of one corner.
+     * @param y0  Imaginary part of one corner.
+     * @param x1  Real part of the opposite corner.
+     * @param y1  Imaginary part of the opposite corner.
+     * @return    The zeros inside the rectangle.
+     */
+    public static Complex[] roots(Polynomial p, double x0, double y0, double x1, double y1) {
+	double lo = Math.min(x0, x1), hi = Math.max(x0, x1);
+	double bot = Math.min(y0, y1), top = Math.max(y0, y1);
+	int n = count(p, lo, bot, hi, top);
+	if (n < 0) {
+	    throw new RuntimeException("Root on the boundary of the rectangle!");
+	}
+	double minSize = MINSIZE * Math.max(1.0, Math.max(hi - lo, top - bot));
+
+	Newton newton = new Newton(p, Newton.NEWTON, 100, Newton.TOL);
+	ArrayList<Complex> roots = new ArrayList<Complex>();
+	ArrayDeque<double[]> stack = new ArrayDeque<double[]>();
+	stack.push(new double[] { lo, bot, hi, top, n });
+	while (!stack.isEmpty()) {
+	    double[] r = stack.pop();
+	    int c = (int) r[4];
+	    if (c == 0) {
+		continue;
+	    }
+	    double cr = 0.5*(r[0] + r[2]), ci = 0.5*(r[1] + r[3]);
+
+	    // Try Newton-Raphson from the centre; its answer is accepted for a
+	    // single root if it stays in the rectangle.
+	    NewtonResult z = newton.solve(cr, ci);
+	    boolean inside = z.converged() && z.getRootReal() >= r[0] && z.getRootReal() <= r[2]
+		&& z.getRootImag() >= r[1] && z.getRootImag() <= r[3];
+	    if (c == 1 && inside) {
+		roots.add(z.getRoot());
+		continue;
+	    }
+
+	    // Otherwise split, unless the rectangle is already tiny or the
+	    // counts can no longer be trusted. The latter happens around a
+	    // multiple root or tight cluster, where |P| sinks into round-off
+	    // (at a distance of about sqrt(eps) for a double root); the Newton
+	    // root (or failing that the centre) is then reported for each root
+	    // in it.
+	    if (Math.max(r[2] - r[0], r[3] - r[1]) < minSize || !split(p, r, stack)) {
+		Complex w = inside ? z.getRoot() : new Complex(cr, ci);
+		for (int k = 0; k < c; k++) {
+		    roots.add(w);
+		}
+	    }
+	}
+	return roots.toArray(new Complex[roots.size()]);
+    }
+
+    /**
+     * Splits the rectangle r = {lo, bot, hi, top, count} into quarters and
+     * pushes them onto the stack. If a root lies on one of the new edges, or
+     * the counts of the quarters do not add up, the split point is moved
+     * away from the centre and the split retried.
+     *
+     * @return False if no consistent split was found.
+     */
+    private static boolean split(Polynomial p, double[] r, ArrayDeque<double[]> stack) {
+	for (int k = 0; k <= RETRIES; k++) {
+	    // Off-centre by irrational fractions, so as not to land on the
+	    // same root twice.
+	    double sx = r[0] + (r[2] - r[0]) * (0.5 + 0.0731*k);
+	    double sy = r[1] + (r[3] - r[1]) * (0.5 + 0.0577*k);
+	    double[][] q = {
+		{ r[0], r[1], sx, sy, 0 }, { sx, r[1], r[2], sy, 0 },
+		{ r[0], sy, sx, r[3], 0 }, { sx, sy, r[2], r[3], 0 }
+	    };
+	    int total = 0;
+	    boolean ok = true;
+	    for (double[] s : q) {
+		int c = count(p, s[0], s[1], s[2], s[3]);
+		if (c < 0) {
+		    ok = false;
+		    break;
+		}
+		s[4]   = c;
+		total += c;
+	    }
+	    if (ok && total == (int) r[4]) {
+		for (double[] s : q) {
+		    stack.push(s);
+		}
+		return true;
+	    }
+	}
+	return false;
+    }
+
+    // ========================================================
+    // Tester function.
+    // ========================================================
+
+    public static void main(String[] args) {
+	// The example polynomial from NewtonFractal.
+	Complex[] coeff = new Complex[] { new Complex(1.0,0.0), new Complex(3.0,0.0),
+					  new Complex(-5.0,-2.0), new Complex(0.0,-3.0),
+					  new Complex(0.0,0.0), new Complex(1.0,0.0) };
+	Polynomial p = new Polynomial(coeff);
+	System.out.println("P = " +p);
+	System.out.println("Roots in [-4,4]^2:   " +count(p, -4.0, -4.0, 4.0, 4.0));
+	System.out.println("Roots in [0,4]x[0,4]: " +count(p, 0.0, 0.0, 4.0, 4.0));
+	for (Complex z : roots(p, -4.0, -4.0, 4.0, 4.0)) {
+	    System.out.println("  " +z);
+	}
+
+	// z^3 - 1 has a root at 1, on the edge of [1,2]x[-1,1].
+	Polynomial q = new Polynomial(new Complex[] { new Complex(-1.0), new Complex(0.0),
+						      new Complex(0.0), new Complex(1.0) });
+	System.out.println("z^3-1 on [1,2]x[-1,1]: " +count(q, 1.0, -1.0, 2.0, 1.0));
+
+	// (z-1)^2 (z+1): a double root.
+	Polynomial d = new Polynomial(new Complex[] { new Complex(1.0), new Complex(-1.0),
+						      new Complex(-1.0), new Complex(1.0) });
+	System.out.println("(z-1)^2 (z+1) on [0,2]x[-1,1]: " +count(d, 0.0, -1.0, 2.0, 1.0));
+	for (Complex z : roots(d, -3.0, -2.0, 3.0, 2.0)) {
+	    System.out.println("  " +z);
+	}
+    }
+}
@@ -0,0 +1,386 @@
+/*
+ * PROJECT II: Convolution.java
+ *
+ * Kernels for multiplying and dividing polynomials with complex
+ * co-efficients, stored as split arrays of real and imaginary parts (as in
+ * Polynomial.coeffRe and Polynomial.coeffIm). multiply() chooses between
+ * three algorithms according to the length of the shorter operand:
+ *
+ *   - schoolbook multiplication, O(nm), for short operands;
+ *   - Karatsuba multiplication, O(n^1.585), for medium operands;
+ *   - multiplication via the complex FFT, O(n log n), for long operands.
+ *
+ * The FFT has an absolute (rather than relative) error of roughly
+ * 2^-52 log(n) times the largest co-efficient, so co-efficients which are
+ * many orders of magnitude smaller than the largest one are not accurate.
+ *
+ * divideAndRemainder() reduces division to multiplication by computing the
+ * reciprocal of the reversed divisor as a power series with Newton's
+ * iteration, so that it runs in the same time as multiply().
+ */
+
+import java.util.Arrays;
+import java.util.Random;
+
+class Convolution {
+    /**
+     * Shorter operands below this length are multiplied by the schoolbook
+     * method.
+     */
+    public static final int KARATSUBA_THRESHOLD = 32;
+
+    /**
+     * Shorter operands of at least this length are multiplied with the FFT.
+     */
+    public static final int FFT_THRESHOLD = 256;
+
+    /**
+     * Multiplies the polynomials a and b, choosing the algorithm according to
+     * their lengths.
+     *
+     * @param aRe  Real parts of the co-efficients of a.
+     * @param aIm  Imaginary parts of the co-efficients of a.
+     * @param bRe  Real parts of the co-efficients of b.
+     * @param bIm  Imaginary parts of the co-efficients of b.
+     * @return     The co-efficients of ab, as {re, im}, of length
+     *             a.length + b.length - 1.
+     */
+    public static double[][] multiply(double[] aRe, double[] aIm, double[] bRe, double[] bIm) {
+	int m = Math.min(aRe.length, bRe.length);
+	if (m < KARATSUBA_THRESHOLD) {
+	    return schoolbook(aRe, aIm, bRe, bIm);
+	} else if (m < FFT_THRESHOLD) {
+	    return karatsuba(aRe, aIm, bRe, bIm);
+	}
+	return fft(aRe, aIm, bRe, bIm);
+    }
+
+    // ========================================================
+    // Schoolbook multiplication.
+    // ========================================================
+
+    /**
+     * Multiplies a and b by the schoolbook method.
+     */
+    public static double[][] schoolbook(double[] aRe, double[] aIm, double[] bRe, double[] bIm) {
+	double[] re = new double[aRe.length + bRe.length - 1];
+	double[] im = new double[re.length];
+	schoolbook(aRe, aIm, 0, aRe.length, bRe, bIm, 0, bRe.length, re, im, 0);
+	return new double[][] { re, im };
+    }
+
+    /**
+     * Adds the product of the slices a[aOff, aOff+n) and b[bOff, bOff+m) to
+     * out, starting at index off.
+     */
+    private static void schoolbook(double[] aRe, double[] aIm, int aOff, int n,
+				   double[] bRe, double[] bIm, int bOff, int m,
+				   double[] outRe, double[] outIm, int off) {
+	for (int i = 0; i < n; i++) {
+	    double xr = aRe[aOff + i], xi = aIm[aOff + i];
+	    if (xr == 0 && xi == 0) {
+		continue;
+	    }
+	    for (int j = 0; j < m; j++) {
+		double yr = bRe[bOff + j], yi = bIm[bOff + j];
+		outRe[off + i + j] += xr*yr - xi*yi;
+		outIm[off + i + j] += xr*yi + xi*yr;
+	    }
+	}
+    }
+
+    // ========================================================
+    // Karatsuba multiplication.
+    // ========================================================
+
+    /**
+     * Multiplies a and b by Karatsuba's method. If the operands have very
+     * different lengths the longer one is cut into pieces of the length of
+     * the shorter one, each of which is multiplied separately.
+     */
+    public static double[][] karatsuba(double[] aRe, double[] aIm, double[] bRe, double[] bIm) {
+	if (aRe.length < bRe.length) {
+	    return karatsuba(bRe, bIm, aRe, aIm);
+	}
+	int n = aRe.length, m = bRe.length;
+	double[] re = new double[n + m - 1], im = new double[re.length];
+	double[] pr = new double[2*m - 1], pi = new double[2*m - 1];
+	double[] cr = new double[m], ci = new double[m];
+
+	for (int off = 0; off < n; off += m) {
+	    int len = Math.min(m, n - off);
+	    Arrays.fill(cr, 0.0);
+	    Arrays.fill(ci, 0.0);
+	    System.arraycopy(aRe, off, cr, 0, len);
+	    System.arraycopy(aIm, off, ci, 0, len);
+	    Arrays.fill(pr, 0.0);
+	    Arrays.fill(pi, 0.0);
+	    karatsuba(cr, ci, 0, bRe, bIm, 0, m, pr, pi, 0);
+	    for (int k = 0; k < len + m - 1; k++) {
+		re[off + k] += pr[k];
+		im[off + k] += pi[k];
+	    }
+	}
+	return new double[][] { re, im };
+    }
+
+    /**
+     * Adds the product of the length n slices a[aOff, aOff+n) and
+     * b[bOff, bOff+n) to out, starting at index off.
+     */
+    private static void karatsuba(double[] aRe, double[] aIm, int aOff,
+				  double[] bRe, double[] bIm, int bOff, int n,
+				  double[] outRe, double[] outIm, int off) {
+	if (n < KARATSUBA_THRESHOLD) {
+	    schoolbook(aRe, aIm, aOff, n, bRe, bIm, bOff, n, outRe, outIm, off);
+	    return;
+	}
+
+	// a = a0 + z^h a1, b = b0 + z^h b1 with a1, b1 the longer halves.
+	int h = n/2, l = n - h;
+
+	// z0 = a0 b0 and z2 = a1 b1.
+	double[] z0r = new double[2*h - 1], z0i = new double[2*h - 1];
+	double[] z2r = new double[2*l - 1], z2i = new double[2*l - 1];
+	karatsuba(aRe, aIm, aOff, bRe, bIm, bOff, h, z0r, z0i, 0);
+	karatsuba(aRe, aIm, aOff + h, bRe, bIm, bOff + h, l, z2r, z2i, 0);
+
+	// z1 = (a0 + a1)(b0 + b1) - z0 - z2.
+	double[] sar = new double[l], sai = new double[l];
+	double[] sbr = new double[l], sbi = new double[l];
+	for (int i = 0; i < l; i++) {
+	    sar[i] = aRe[aOff + h + i];
+	    sai[i] = aIm[aOff + h + i];
+	    sbr[i] = bRe[bOff + h + i];
+	    sbi[i] = bIm[bOff + h + i];
+	    if (i < h) {
+		sar[i] += aRe[aOff + i];
+		sai[i] += aIm[aOff + i];
+		sbr[i] += bRe[bOff + i];
+		sbi[i] += bIm[bOff + i];
+	    }
+	}
+	double[] z1r = new double[2*l - 1], z1i = new double[2*l - 1];
+	karatsuba(sar, sai, 0, sbr, sbi, 0, l, z1r, z1i, 0);
+	for (int i = 0; i < z2r.length; i++) {
+	    z1r[i] -= z2r[i];
+	    z1i[i] -= z2i[i];
+	}
+	for (int i = 0; i < z0r.length; i++) {
+	    z1r[i] -= z0r[i];
+	    z1i[i] -= z0i[i];
+	}
+
+	// out += z0 + z^h z1 + z^2h z2.
+	for (int i = 0; i < z0r.length; i++) {
+	    outRe[off + i] += z0r[i];
+	    outIm[off + i] += z0i[i];
+	}
+	for (int i = 0; i < z1r.length; i++) {
+	    outRe[off + h + i] += z1r[i];
+	    outIm[off + h + i] += z1i[i];
+	}
+	for (int i = 0; i < z2r.length; i++) {
+	    outRe[off + 2*h + i] += z2r[i];
+	    outIm[off + 2*h + i] += z2i[i];
+	}
+    }
+
+    // ========================================================
+    // FFT multiplication.
+    // ========================================================
+
+    /**
+     * Multiplies a and b by transforming both with the FFT, multiplying
+     * pointwise and transforming back.
+     */
+    public static double[][] fft(double[] aRe, double[] aIm, double[] bRe, double[] bIm) {
+	int len = aRe.length + bRe.length - 1;
+	int size = Integer.highestOneBit(Math.max(1, len - 1)) << 1;
+
+	double[] xr = Arrays.copyOf(aRe, size), xi = Arrays.copyOf(aIm, size);
+	double[] yr = Arrays.copyOf(bRe, size), yi = Arrays.copyOf(bIm, size);
+	transform(xr, xi, false);
+	transform(yr, yi, false);
+	for (int k = 0; k < size; k++) {
+	    double t = xr[k]*yr[k] - xi[k]*yi[k];
+	    xi[k] = xr[k]*yi[k] + xi[k]*yr[k];
+	    xr[k] = t;
+	}
+	transform(xr, xi, true);
+
+	double[] re = new double[len], im = new double[len];
+	for (int k = 0; k < len; k++) {
+	    re[k] = xr[k] / size;
+	    im[k] = xi[k] / size;
+	}
+	return new double[][] { re, im };
+    }
+
+    /**
+     * In-place iterative radix-2 FFT of a sequence whose length is a power of
+     * two. The forward transform uses the kernel exp(-2 pi i jk/N); the
+     * inverse transform is unscaled.
+     *
+     * @param re       Real parts of the sequence.
+     * @param im       Imaginary parts of the sequence.
+     * @param inverse  Whether to compute the inverse transform.
+     */
+    public static void transform(double[] re, double[] im, boolean inverse) {
+	int n = re.length;
+
+	// Bit-reversal permutation.
+	for (int i = 1, j = 0; i < n; i++) {
+	    int bit = n >> 1;
+	    for (; (j & bit) != 0; bit >>= 1) {
+		j ^= bit;
+	    }
+	    j ^= bit;
+	    if (i < j) {
+		double t = re[i]; re[i] = re[j]; re[j] = t;
+		t = im[i]; im[i] = im[j]; im[j] = t;
+	    }
+	}
+
+	// Twiddle factors, computed directly for accuracy.
+	int half = n/2;
+	double[] wr = new double[Math.max(1, half)], wi = new double[wr.length];
+	double sign = inverse ? 1.0 : -1.0;
+	for (int k = 0; k < half; k++) {
+	    double theta = 2*Math.PI*k/n;
+	    wr[k] = Math.cos(theta);
+	    wi[k] = sign*Math.sin(theta);
+	}
+
+	// Butterflies.
+	for (int len = 2; len <= n; len <<= 1) {
+	    int step = n/len, h = len/2;
+	    for (int i = 0; i < n; i += len) {
+		for (int k = 0; k < h; k++) {
+		    double cr = wr[k*step], ci = wi[k*step];
+		    int u = i + k, v = u + h;
+		    double tr = re[v]*cr - im[v]*ci;
+		    double ti = re[v]*ci + im[v]*cr;
+		    re[v] = re[u] - tr;
+		    im[v] = im[u] - ti;
+		    re[u] += tr;
+		    im[u] += ti;
+		}
+	    }
+	}
+    }
+
+    // ========================================================
+    // Fast division.
+    // ========================================================
+
+    /**
+     * Computes the first len co-efficients of the power series 1/f, using
+     * Newton's iteration g <- g(2 - fg), which doubles the number of correct
+     * co-efficients at every step. f[0] must be non-zero.
+     *
+     * @param fRe  Real parts of the co-efficients of f.
+     * @param fIm  Imaginary parts of the co-efficients of f.
+     * @param len  The number of co-efficients required.
+     * @return     The co-efficients of 1/f mod z^len, as {re, im}.
+     */
+    public static double[][] inverse(double[] fRe, double[] fIm, int len) {
+	double f2 = fRe[0]*fRe[0] + fIm[0]*fIm[0];
+	double[] gRe = { fRe[0]/f2 }, gIm = { -fIm[0]/f2 };
+	for (int k = 1; k < len; ) {
+	    k = Math.min(2*k, len);
+	    // e = f g mod z^k, then g <- g (2 - e) mod z^k.
+	    double[][] e = multiply(Arrays.copyOf(fRe, Math.min(k, fRe.length)),
+				    Arrays.copyOf(fIm, Math.min(k, fIm.length)), gRe, gIm);
+	    double[] eRe = new double[k], eIm = new double[k];
+	    for (int i = 0; i < k && i < e[0].length; i++) {
+		eRe[i] = -e[0][i];
+		eIm[i] = -e[1][i];
+	    }
+	    eRe[0] += 2.0;
+	    double[][] g = multiply(gRe, gIm, eRe, eIm);
+	    gRe = Arrays.copyOf(g[0], k);
+	    gIm = Arrays.copyOf(g[1], k);
+	}
+	return new double[][] { gRe, gIm };
+    }
+
+    /**
+     * Divides a by b with remainder using the reversed-polynomial reciprocal.
+     * The leading co-efficient of b must be non-zero, and b must not be
+     * longer than a.
+     *
+     * @param aRe  Real parts of the co-efficients of a.
+     * @param aIm  Imaginary parts of the co-efficients of a.
+     * @param bRe  Real parts of the co-efficients of b.
+     * @param bIm  Imaginary parts of the co-efficients of b.
+     * @return     {qRe, qIm, rRe, rIm} with a = qb + r and r of length
+     *             b.length - 1 (or 1 if b is constant).
+     */
+    public static double[][] divideAndRemainder(double[] aRe, double[] aIm,
+						double[] bRe, double[] bIm) {
+	int n = aRe.length - 1, m = bRe.length - 1, len = n - m + 1;
+
+	// rev(q) = rev(a) / rev(b) mod z^(n-m+1).
+	double[] raRe = new double[len], raIm = new double[len];
+	for (int i = 0; i < len; i++) {
+	    raRe[i] = aRe[n - i];
+	    raIm[i] = aIm[n - i];
+	}
+	double[] rbRe = new double[Math.min(len, m + 1)], rbIm = new double[rbRe.length];
+	for (int i = 0; i < rbRe.length; i++) {
+	    rbRe[i] = bRe[m - i];
+	    rbIm[i] = bIm[m - i];
+	}
+	double[][] inv = inverse(rbRe, rbIm, len);
+	double[][] rq  = multiply(raRe, raIm, inv[0], inv[1]);
+	double[] qRe = new double[len], qIm = new double[len];
+	for (int i = 0; i < len; i++) {
+	    qRe[i] = rq[0][len - 1 - i];
+	    qIm[i] = rq[1][len - 1 - i];
+	}
+
+	// r = a - qb, of which only the low m co-efficients are non-zero.
+	double[][] qb = multiply(qRe, qIm, bRe, bIm);
+	int rl = Math.max(1, m);
+	double[] rRe = new double[rl], rIm = new double[rl];
+	for (int i = 0; i < m; i++) {
+	    rRe[i] = aRe[i] - qb[0][i];
+	    rIm[i] = aIm[i] - qb[1][i];
+	}
+	return new double[][] { qRe, qIm, rRe, rIm };
+    }
+
+    // ========================================================
+    // Tester function.
+    // ========================================================
+
+    public static void main(String[] args) {
+	// Compare the three algorithms on random operands of various sizes.
+	Random rand = new Random(1);
+	int[] sizes = { 10, 100, 1000, 5000 };
+	for (int n : sizes) {
+	    double[] ar = new double[n], ai = new double[n], br = new double[n], bi = new double[n];
+	    for (int k = 0; k < n; k++) {
+		ar[k] = rand.nextDouble(); ai[k] = rand.nextDouble();
+		br[k] = rand.nextDouble(); bi[k] = rand.nextDouble();
+	    }
+	    long t0 = System.nanoTime();
+	    double[][] s = schoolbook(ar, ai, br, bi);
+	    long t1 = System.nanoTime();
+	    double[][] k = karatsuba(ar, ai, br, bi);
+	    long t2 = System.nanoTime();
+	    double[][] f = fft(ar, ai, br, bi);
+	    long t3 = System.nanoTime();
+
+	    double ek = 0.0, ef = 0.0;
+	    for (int i = 0; i < s[0].length; i++) {
+		ek = Math.max(ek, Math.hypot(s[0][i] - k[0][i], s[1][i] - k[1][i]));
+		ef = Math.max(ef, Math.hypot(s[0][i] - f[0][i], s[1][i] - f[1][i]));
+	    }
+	    System.out.println(String.format("n = %5d  schoolbook %8.2f ms  karatsuba %8.2f ms (err %.1e)"
+					     + "  fft %8.2f ms (err %.1e)", n, (t1 - t0)/1e6,
+					     (t2 - t1)/1e6, ek, (t3 - t2)/1e6, ef));
+	}
+    }
+}
@@ -0,0 +1,330 @@
+/*
+ * PROJECT II: DDComplex.java
+ *
+ * This class implements complex numbers in double-double arithmetic: each of
+ * the real and imaginary parts is held as an unevaluated sum hi + lo of two
+ * doubles with |lo| <= ulp(hi)/2, giving about 106 bits (32 decimal digits)
+ * of precision.
+ *
+ * It is used for deep zooms of Newton fractals, where the spacing between
+ * pixels is so small that neighbouring starting points are no longer
+ * distinct as doubles. The operations mirror those of Complex, and are built
+ * from the error-free transformations two-sum and two-product (the latter
+ * using Math.fma), following Dekker and the QD library of Hida, Li and
+ * Bailey.
+ */
+
+public class DDComplex {
+    /**
+     * High and low parts of the real component x = xHi + xLo.
+     */
+    private final double xHi, xLo;
+
+    /**
+     * High and low parts of the imaginary component y = yHi + yLo.
+     */
+    private final double yHi, yLo;
+
+    // ========================================================
+    // Constructor functions.
+    // ========================================================
+
+    /**
+     * Constructor: initialises all four parts. The pairs (xHi, xLo) and (yHi,
+     * yLo) are renormalised, so they need not be non-overlapping.
+     *
+     * @param xHi  High part of the real component.
+     * @param xLo  Low part of the real component.
+     * @param yHi  High part of the imaginary component.
+     * @param yLo  Low part of the imaginary component.
+     */
+    public DDComplex(double xHi, double xLo, double yHi, double yLo) {
+	double s = xHi + xLo;
+	this.xLo = xLo - (s - xHi);
+	this.xHi = s;
+	s = yHi + yLo;
+	this.yLo = yLo - (s - yHi);
+	this.yHi = s;
+    }
+
+    /**
+     * Constructor: initialises with the complex number x+iy.
+     *
+     * @param x  The real component.
+     * @param y  The imaginary component.
+     */
+    public DDComplex(double x, double y) {
+	this(x, 0.0, y, 0.0);
+    }
+
+    /**
+     * Constructor: initialises with the value of a Complex.
+     *
+     * @param z  The complex number to convert.
+     */
+    public DDComplex(Complex z) {
+	this(z.getReal(), 0.0, z.getImag(), 0.0);
+    }
+
+    // ========================================================
+    // Accessor methods.
+    // ========================================================
+
+    /**
+     * Accessor Method: get the high part of the real component, i.e. the
+     * real component rounded to a double.
+     *
+     * @return The real part, rounded to double precision.
+     */
+    public double getReal() {
+	return xHi;
+    }
+
+    /**
+     * Accessor Method: get the low part of the real component.
+     *
+     * @return The rounding error of getReal().
+     */
+    public double getRealLo() {
+	return xLo;
+    }
+
+    /**
+     * Accessor Method: get the high part of the imaginary component, i.e. the
+     * imaginary component rounded to a double.
+     *
+     * @return The imaginary part, rounded to double precision.
+     */
+    public double getImag() {
+	return yHi;
+    }
+
+    /**
+     * Accessor Method: get the low part of the imaginary component.
+     *
+     * @return The rounding error of getImag().
+     */
+    public double getImagLo() {
+	return yLo;
+    }
+
+    /**
+     * Rounds this number to an ordinary Complex.
+     *
+     * @return The nearest Complex to this number.
+     */
+    public Complex toComplex() {
+	return new Complex(xHi, yHi);
+    }
+
+    // ========================================================
+    // Operations and functions with complex numbers.
+    // ========================================================
+
+    /**
+     * Converts the complex number to a string, showing the high and low parts
+     * of each component.
+     *
+     * @return A string describing the complex number.
+     */
+    public String toString() {
+	return "(" +xHi+ " + " +xLo+ ") + (" +yHi+ " + " +yLo+ ")i";
+    }
+
+    /**
+     * Computes the square of the absolute value, rounded to a double.
+     *
+     * @return |z|^2 to double precision.
+     */
+    public double abs2() {
+	return xHi*xHi + yHi*yHi;
+    }
+
+    /**
+     * Computes the absolute value, rounded to a double.
+     *
+     * @return |z| to double precision.
+     */
+    public double abs() {
+	return Math.sqrt(abs2());
+    }
+
+    /**
+     * Calculates the conjugate of this complex number.
+     *
+     * @return A DDComplex containing the conjugate.
+     */
+    public DDComplex conjugate() {
+	return new DDComplex(xHi, xLo, -yHi, -yLo);
+    }
+
+    /**
+     * Calculates -z.
+     *
+     * @return The complex number -z.
+     */
+    public DDComplex minus() {
+	return new DDComplex(-xHi, -xLo, -yHi, -yLo);
+    }
+
+    /**
+     * Adds a complex number to this one.
+     *
+     * @param b  The complex number to add to this one.
+     * @return   The sum of this complex number with b.
+     */
+    public DDComplex add(DDComplex b) {
+	double[] r = new double[4];
+	add(xHi, xLo, b.xHi, b.xLo, r, 0);
+	add(yHi, yLo, b.yHi, b.yLo, r, 2);
+	return new DDComplex(r[0], r[1], r[2], r[3]);
+    }
+
+    /**
+     * Adds an ordinary complex number to this one.
+     *
+     * @param b  The complex number to add to this one.
+     * @return   The sum of this complex number with b.
+     */
+    public DDComplex add(Complex b) {
+	double[] r = new double[4];
+	add(xHi, xLo, b.getReal(), 0.0, r, 0);
+	add(yHi, yLo, b.getImag(), 0.0, r, 2);
+	return new DDComplex(r[0], r[1], r[2], r[3]);
+    }
+
+    /**
+     * Multiplies this complex number by a real constant.
+     *
+     * @param alpha  The constant to multiply by.
+     * @return       The product of alpha with z.
+     */
+    public DDComplex multiply(double alpha) {
+	double[] r = new double[4];
+	mul(xHi, xLo, alpha, 0.0, r, 0);
+	mul(yHi, yLo, alpha, 0.0, r, 2);
+	return new DDComplex(r[0], r[1], r[2], r[3]);
+    }
+
+    /**
+     * Multiplies this complex number by another complex number.
+     *
+     * @param b  The complex number to multiply by.
+     * @return   The product of b with z.
+     */
+    public DDComplex multiply(DDComplex b) {
+	double[] r = new double[8];
+	// (x p - y q) + i (x q + y p).
+	mul(xHi, xLo, b.xHi, b.xLo, r, 0);
+	mul(yHi, yLo, b.yHi, b.yLo, r, 2);
+	add(r[0], r[1], -r[2], -r[3], r, 4);
+	mul(xHi, xLo, b.yHi, b.yLo, r, 0);
+	mul(yHi, yLo, b.xHi, b.xLo, r, 2);
+	add(r[0], r[1], r[2], r[3], r, 6);
+	return new DDComplex(r[4], r[5], r[6], r[7]);
+    }
+
+    /**
+     * Divide this complex number by another.
+     *
+     * @param b  The complex number to divide by.
+     * @return   The division z/b.
+     */
+    public DDComplex divide(DDComplex b) {
+	double[] r = new double[4];
+	// |b|^2 in double-double.
+	mul(b.xHi, b.xLo, b.xHi, b.xLo, r, 0);
+	mul(b.yHi, b.yLo, b.yHi, b.yLo, r, 2);
+	add(r[0], r[1], r[2], r[3], r, 0);
+	double mHi = r[0], mLo = r[1];
+	if (mHi == 0.0) {
+	    throw new RuntimeException("Division by zero!");
+	}
+
+	DDComplex t = multiply(b.conjugate());
+	div(t.xHi, t.xLo, mHi, mLo, r, 0);
+	div(t.yHi, t.yLo, mHi, mLo, r, 2);
+	return new DDComplex(r[0], r[1], r[2], r[3]);
+    }
+
+    // ========================================================
+    // Double-double kernels.
+    // ========================================================
+
+    /**
+     * Stores the double-double sum (ah + al) + (bh + bl) in r[o], r[o+1].
+     * This is the accurate (IEEE-style) addition, with a relative error of
+     * about 2^-106.
+     */
+    static void add(double ah, double al, double bh, double bl, double[] r, int o) {
+	// Two-sum of the high and low parts separately.
+	double s = ah + bh, v = s - ah;
+	double e = (ah - (s - v)) + (bh - v);
+	double t = al + bl;
+	v = t - al;
+	double f = (al - (t - v)) + (bl - v);
+
+	e += t;
+	double h = s + e;
+	e = e - (h - s);
+	e += f;
+	s = h + e;
+	r[o]   = s;
+	r[o+1] = e - (s - h);
+    }
+
+    /**
+     * Stores the double-double product (ah + al)(bh + bl) in r[o], r[o+1],
+     * using Math.fma for the exact product of the high parts.
+     */
+    static void mul(double ah, double al, double bh, double bl, double[] r, int o) {
+	double p = ah*bh;
+	double e = Math.fma(ah, bh, -p);
+	e += ah*bl + al*bh;
+	double s = p + e;
+	r[o]   = s;
+	r[o+1] = e - (s - p);
+    }
+
+    /**
+     * Stores the double-double quotient (ah + al)/(bh + bl) in r[o], r[o+1].
+     * The quotient is built from three double quotients q1 + q2 + q3, each
+     * the high part of the remainder so far divided by bh.
+     */
+    static void div(double ah, double al, double bh, double bl, double[] r, int o) {
+	double q1 = ah/bh;
+	mul(bh, bl, q1, 0.0, r, o);
+	add(ah, al, -r[o], -r[o+1], r, o);
+	double rh = r[o], rl = r[o+1];
+
+	double q2 = rh/bh;
+	mul(bh, bl, q2, 0.0, r, o);
+	add(rh, rl, -r[o], -r[o+1], r, o);
+	double q3 = r[o]/bh;
+
+	double s = q1 + q2;
+	add(s, q2 - (s - q1), q3, 0.0, r, o);
+    }
+
+    // ========================================================
+    // Tester function.
+    // ========================================================
+
+    public static void main(String[] args) {
+	// 1/3 in double-double, checked against 3 * (1/3) = 1.
+	DDComplex one   = new DDComplex(1.0, 0.0);
+	DDComplex three = new DDComplex(3.0, 0.0);
+	DDComplex third = one.divide(three);
+	System.out.println("1/3 =           " +third);
+	System.out.println("3 * (1/3) - 1 = " +third.multiply(three).add(one.minus()));
+
+	// (1 + 1e-20) is not representable as a double, but is in DD.
+	DDComplex z = new DDComplex(1.0, 1.0e-20, 0.0, 0.0);
+	System.out.println("(1+1e-20) - 1 = " +z.add(one.minus()));
+
+	// i^2 = -1 and (1+2i)/(3-4i) = -1/5 + 2/5 i.
+	DDComplex i = new DDComplex(0.0, 1.0);
+	System.out.println("i^2 =           " +i.multiply(i));
+	System.out.println("(1+2i)/(3-4i) = " +new DDComplex(1.0, 2.0).divide(new DDComplex(3.0, -4.0)));
+    }
+}
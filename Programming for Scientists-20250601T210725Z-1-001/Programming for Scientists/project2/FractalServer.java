@@ -0,0 +1,501 @@
+/*
+ * PROJECT II: FractalServer.java
+ *
+ * A small HTTP server which serves Newton fractal tiles from FractalTiles,
+ * so that a viewer can talk to one warm JVM instead of starting a new one
+ * per image. A tile is requested as
+ *
+ *   GET /tile/z/x/y.png?p=1,0;3,0;-5,-2;0,-3;0,0;1,0&origin=-4,4&width=8&scheme=dark
+ *
+ * where p lists the co-efficients re,im from the constant term upwards, and
+ * origin and width give tile (0, 0, 0) as for FractalTiles (by default the
+ * square [-4,4]^2); scheme is "light" (the default) or "dark", as in
+ * NewtonFractal.createFractal().
+ *
+ * Requests are handled on virtual threads when the JVM has them (Java 21
+ * and later), and on a cached thread pool otherwise; either way a handler
+ * may simply block while its tile is rendered. Tiles which are in the
+ * caches of FractalTiles are served at once. Others are rendered by a fixed
+ * pool of workers with a bounded queue: concurrent requests for the same
+ * tile share a single render, and when the queue is full the server answers
+ * 503 with Retry-After rather than letting work pile up.
+ */
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.*;
+import java.lang.reflect.Method;
+import java.net.*;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+
+class FractalServer {
+    /**
+     * Number of tiles that may wait for a render worker before requests are
+     * turned away.
+     */
+    public static final int QUEUE = 64;
+
+    /**
+     * Number of tile pyramids (i.e. distinct polynomials and windows) kept
+     * open, and the number of tiles each keeps in memory.
+     */
+    public static final int PYRAMIDS = 16;
+    public static final int MEMORYTILES = 256;
+
+    /**
+     * The HTTP server and the executor its handlers run on.
+     */
+    private final HttpServer server;
+    private final ExecutorService handlers;
+
+    /**
+     * The render workers, with their bounded queue.
+     */
+    private final ThreadPoolExecutor renderer;
+
+    /**
+     * The directory of the on-disk tile cache, shared by all pyramids.
+     */
+    private final File cacheDir;
+
+    /**
+     * The open pyramids by their parameters, least recently used first.
+     */
+    private final LinkedHashMap<String, FractalTiles> pyramids;
+
+    /**
+     * Renders in progress, by pyramid and tile; a request for a tile which
+     * is already being rendered waits for that render instead of queueing
+     * another.
+     */
+    private final ConcurrentHashMap<String, CompletableFuture<byte[]>> inflight =
+	new ConcurrentHashMap<String, CompletableFuture<byte[]>>();
+
+    // ========================================================
+    // Constructor function.
+    // ========================================================
+
+    /**
+     * Constructor: binds the server to a port on the loopback interface. It
+     * does not accept requests until start() is called.
+     *
+     * @param port      The port to listen on, or 0 for any free port.
+     * @param cacheDir  The directory of the on-disk tile cache.
+     * @param workers   The number of tiles rendered at once.
+     * @param queue     The number of tiles that may wait to be rendered.
+     */
+    public FractalServer(int port, File cacheDir, int workers, int queue) throws IOException {
+	if (workers < 1 || queue < 1) {
+	    throw new RuntimeException("Server needs at least one worker and queue slot!");
+	}
+	this.cacheDir = cacheDir;
+	this.pyramids = new LinkedHashMap<String, FractalTiles>(16, 0.75f, true) {
+	    private static final long serialVersionUID = 1L;
+
+	    protected boolean removeEldestEntry(Map.Entry<String, FractalTiles> eldest) {
+		return size() > PYRAMIDS;
+	    }
+	};
+	this.renderer = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+					       new ArrayBlockingQueue<Runnable>(queue));
+	this.handlers = handlerExecutor();
+	this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+	this.server.setExecutor(handlers);
+	this.server.createContext("/tile/", new HttpHandler() {
+	    public void handle(HttpExchange exchange) throws IOException {
+		serve(exchange);
+	    }
+	});
+    }
+
+    /**
+     * Returns an executor which runs each task on a new virtual thread if
+     * this JVM supports them, or else a cached thread pool. The method is
+     * looked up reflectively so that the class still compiles and runs on
+     * Java 17.
+     */
+    private static ExecutorService handlerExecutor() {
+	try {
+	    Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+	    return (ExecutorService) m.invoke(null);
+	} catch (ReflectiveOperationException e) {
+	    return Executors.newCachedThreadPool();
+	}
+    }
+
+    // ========================================================
+    // Server control.
+    // ========================================================
+
+    /**
+     * Starts accepting requests.
+     */
+    public void start() {
+	server.start();
+    }
+
+    /**
+     * Stops the server, waiting at most the given number of seconds for
+     * requests in progress to finish.
+     */
+    public void stop(int delay) {
+	server.stop(delay);
+	handlers.shutdown();
+	renderer.shutdown();
+    }
+
+    /**
+     * Returns the port the server is listening on.
+     */
+    public int getPort() {
+	return server.getAddress().getPort();
+    }
+
+    // ========================================================
+    // Request handling.
+    // ========================================================
+
+    /**
+     * Handles one tile request.
+     */
+    private void serve(HttpExchange exchange) throws IOException {
+	try {
+	    if (!"GET".equals(exchange.getRequestMethod())) {
+		send(exchange, 405, "Only GET is supported");
+		return;
+	    }
+
+	    // Parse the request. Malformed requests, and tiles outside the
+	    // pyramid, give a RuntimeException here; failures of the cache
+	    // directory come as (unchecked) IOExceptions and are ours.
+	    FractalTiles tiles;
+	    String pyramid;
+	    int z;
+	    long x, y;
+	    byte[] png;
+	    try {
+		String[] path = exchange.getRequestURI().getPath().split("/");
+		if (path.length != 5 || !path[4].endsWith(".png")) {
+		    send(exchange, 404, "Expected /tile/z/x/y.png");
+		    return;
+		}
+		z = Integer.parseInt(path[2]);
+		x = Long.parseLong(path[3]);
+		y = Long.parseLong(path[4].substring(0, path[4].length() - 4));
+		pyramid = pyramidKey(exchange.getRequestURI().getRawQuery());
+		tiles = pyramid(pyramid);
+		png = tiles.cached(z, x, y);
+	    } catch (UncheckedIOException e) {
+		send(exchange, 500, "Cache failed: " +e.getCause());
+		return;
+	    } catch (RuntimeException e) {
+		send(exchange, 400, "Bad request: " +e.getMessage());
+		return;
+	    }
+
+	    if (png == null) {
+		try {
+		    png = render(tiles, pyramid+ "/" +z+ "/" +x+ "/" +y, z, x, y);
+		} catch (RejectedExecutionException e) {
+		    exchange.getResponseHeaders().set("Retry-After", "1");
+		    send(exchange, 503, "Render queue full");
+		    return;
+		}
+	    }
+
+	    // Tiles are addressed by content, so they never change.
+	    exchange.getResponseHeaders().set("Content-Type", "image/png");
+	    exchange.getResponseHeaders().set("Cache-Control", "public, max-age=31536000, immutable");
+	    exchange.sendResponseHeaders(200, png.length);
+	    try (OutputStream out = exchange.getResponseBody()) {
+		out.write(png);
+	    }
+	} catch (Exception e) {
+	    // Once the headers have gone out the status cannot be changed;
+	    // closing the exchange cuts the response short instead.
+	    if (exchange.getResponseCode() == -1) {
+		send(exchange, 500, "Render failed: " +e);
+	    }
+	} finally {
+	    exchange.close();
+	}
+    }
+
+    /**
+     * Sends a plain text response.
+     */
+    private static void send(HttpExchange exchange, int status, String message) throws IOException {
+	byte[] body = (message + "\n").getBytes("UTF-8");
+	exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+	exchange.sendResponseHeaders(status, body.length);
+	try (OutputStream out = exchange.getResponseBody()) {
+	    out.write(body);
+	}
+    }
+
+    /**
+     * Renders a tile on the worker pool and waits for it. If the same tile
+     * is already being rendered, waits for that render instead.
+     *
+     * @param key  Identifies the pyramid and tile.
+     * @throws RejectedExecutionException if the render queue is full.
+     */
+    private byte[] render(FractalTiles tiles, String key, int z, long x, long y) throws Exception {
+	CompletableFuture<byte[]> mine = new CompletableFuture<byte[]>();
+	CompletableFuture<byte[]> flight = inflight.putIfAbsent(key, mine);
+	if (flight == null) {
+	    flight = mine;
+	    try {
+		renderer.execute(new Render(tiles, key, z, x, y, mine));
+	    } catch (RejectedExecutionException e) {
+		// Requests already waiting on this flight are turned away too.
+		inflight.remove(key, mine);
+		mine.completeExceptionally(e);
+	    }
+	}
+	try {
+	    return flight.get();
+	} catch (ExecutionException e) {
+	    Throwable cause = e.getCause();
+	    if (cause instanceof Exception) {
+		throw (Exception) cause;
+	    }
+	    throw e;
+	}
+    }
+
+    /**
+     * A tile render, run by a worker, which completes the future that the
+     * requests for the tile are waiting on.
+     */
+    private class Render implements Runnable {
+	private final FractalTiles tiles;
+	private final String key;
+	private final int z;
+	private final long x, y;
+	private final CompletableFuture<byte[]> result;
+
+	Render(FractalTiles tiles, String key, int z, long x, long y, CompletableFuture<byte[]> result) {
+	    this.tiles  = tiles;
+	    this.key    = key;
+	    this.z      = z;
+	    this.x      = x;
+	    this.y      = y;
+	    this.result = result;
+	}
+
+	public void run() {
+	    try {
+		// tile() looks in the caches again, in case a render for this
+		// tile finished between the request's lookup and this one.
+		result.complete(tiles.tile(z, x, y));
+	    } catch (Throwable t) {
+		result.completeExceptionally(t);
+	    } finally {
+		inflight.remove(key, result);
+	    }
+	}
+    }
+
+    // ========================================================
+    // Pyramids.
+    // ========================================================
+
+    /**
+     * Parses the query string of a request into a canonical description of
+     * its pyramid: the co-efficients (with trailing zeros dropped), origin,
+     * width and colour scheme, separated by '|'.
+     */
+    private static String pyramidKey(String query) {
+	String coeffs = null, origin = "-4,4", width = "8", scheme = "light";
+	if (query != null) {
+	    for (String pair : query.split("&")) {
+		int eq = pair.indexOf('=');
+		if (eq < 0) {
+		    throw new RuntimeException("Malformed parameter " +pair+ "!");
+		}
+		String name  = pair.substring(0, eq);
+		String value = URLDecoder.decode(pair.substring(eq + 1), java.nio.charset.StandardCharsets.UTF_8);
+		if (name.equals("p")) {
+		    coeffs = value;
+		} else if (name.equals("origin")) {
+		    origin = value;
+		} else if (name.equals("width")) {
+		    width = value;
+		} else if (name.equals("scheme")) {
+		    scheme = value;
+		} else {
+		    throw new RuntimeException("Unknown parameter " +name+ "!");
+		}
+	    }
+	}
+	if (coeffs == null) {
+	    throw new RuntimeException("Missing polynomial p!");
+	}
+
+	Polynomial p = new Polynomial(parseComplex(coeffs.split(";")));
+	if (p.degree() < 3 || p.degree() > 5) {
+	    throw new RuntimeException("Degree of polynomial must be between 3 and 5 inclusive!");
+	}
+	Complex o = parseComplex(new String[] { origin })[0];
+	double w = Double.parseDouble(width);
+	if (!(w > 0) || Double.isInfinite(w)) {
+	    throw new RuntimeException("Width must be positive!");
+	}
+	if (!scheme.equals("light") && !scheme.equals("dark")) {
+	    throw new RuntimeException("Scheme must be light or dark!");
+	}
+	return Arrays.toString(p.realCoeffs())+ "|" +Arrays.toString(p.imagCoeffs())+ "|"
+	    +o.getReal()+ "," +o.getImag()+ "|" +w+ "|" +scheme;
+    }
+
+    /**
+     * Parses complex numbers written as "re,im" (or just "re").
+     */
+    private static Complex[] parseComplex(String[] values) {
+	Complex[] z = new Complex[values.length];
+	for (int i = 0; i < values.length; i++) {
+	    String[] parts = values[i].split(",");
+	    if (parts.length > 2) {
+		throw new RuntimeException("Malformed complex number " +values[i]+ "!");
+	    }
+	    double re = Double.parseDouble(parts[0]);
+	    double im = parts.length == 2 ? Double.parseDouble(parts[1]) : 0.0;
+	    if (Double.isNaN(re) || Double.isInfinite(re) || Double.isNaN(im) || Double.isInfinite(im)) {
+		throw new RuntimeException("Complex number " +values[i]+ " is not finite!");
+	    }
+	    z[i] = new Complex(re, im);
+	}
+	return z;
+    }
+
+    /**
+     * Returns the pyramid described by a key from pyramidKey(), opening it if
+     * necessary.
+     */
+    private FractalTiles pyramid(String key) {
+	synchronized (pyramids) {
+	    FractalTiles tiles = pyramids.get(key);
+	    if (tiles == null) {
+		String[] f = key.split("\\|");
+		double[] re = parseArray(f[0]), im = parseArray(f[1]);
+		String[] o = f[2].split(",");
+		try {
+		    tiles = new FractalTiles(new Polynomial(re, im),
+					     new DDComplex(Double.parseDouble(o[0]), Double.parseDouble(o[1])),
+					     Double.parseDouble(f[3]), f[4].equals("dark"), cacheDir, MEMORYTILES);
+		} catch (IOException e) {
+		    throw new UncheckedIOException(e);
+		}
+		// Tiles are rendered side by side, so each uses one thread.
+		tiles.setParallelism(1);
+		pyramids.put(key, tiles);
+	    }
+	    return tiles;
+	}
+    }
+
+    /**
+     * Parses the output of Arrays.toString(double[]).
+     */
+    private static double[] parseArray(String s) {
+	String[] parts = s.substring(1, s.length() - 1).split(", ");
+	double[] a = new double[parts.length];
+	for (int i = 0; i < a.length; i++) {
+	    a[i] = Double.parseDouble(parts[i]);
+	}
+	return a;
+    }
+
+    // ========================================================
+    // Tester function.
+    // ========================================================
+
+    /**
+     * With a port number as argument, serves tiles until killed. Otherwise
+     * fires concurrent requests at a server on a free port and checks that
+     * they share one render.
+     */
+    public static void main(String[] args) throws Exception {
+	int workers = Runtime.getRuntime().availableProcessors();
+	File dir = new File("tile-cache");
+	if (args.length > 0) {
+	    FractalServer s = new FractalServer(Integer.parseInt(args[0]), dir, workers, QUEUE);
+	    s.start();
+	    System.out.println("Serving tiles on http://localhost:" +s.getPort()+ "/tile/z/x/y.png?p=...");
+	    return;
+	}
+
+	// A fresh cache, so that the tiles really are rendered.
+	dir = java.nio.file.Files.createTempDirectory("tiles").toFile();
+	final FractalServer s = new FractalServer(0, dir, workers, QUEUE);
+	s.start();
+	final String base = "http://localhost:" +s.getPort()+ "/tile/";
+	final String query = "?p=1,0;3,0;-5,-2;0,-3;0,0;1,0&scheme=dark";
+
+	// Sixteen simultaneous requests for one tile: one render.
+	ExecutorService clients = Executors.newFixedThreadPool(16);
+	java.util.List<Future<Integer>> replies = new java.util.ArrayList<Future<Integer>>();
+	for (int k = 0; k < 16; k++) {
+	    replies.add(clients.submit(new Callable<Integer>() {
+		public Integer call() throws IOException {
+		    return status(base + "1/0/1.png" + query);
+		}
+	    }));
+	}
+	int ok = 0;
+	for (Future<Integer> r : replies) {
+	    ok += r.get() == 200 ? 1 : 0;
+	}
+	System.out.println(ok+ " of 16 requests served, "
+			   +s.pyramid(pyramidKey(query.substring(1))).renders()+ " render(s)");
+
+	// Some bad requests.
+	System.out.println("Degree 2:      " +status(base + "0/0/0.png?p=1,0;0,0;1,0"));
+	System.out.println("Out of range:  " +status(base + "1/2/0.png" + query));
+	System.out.println("Bad path:      " +status(base + "1/2.png" + query));
+
+	s.stop(0);
+
+	// One worker and one queue slot: a burst of distinct tiles is partly
+	// turned away.
+	final FractalServer t = new FractalServer(0, dir, 1, 1);
+	t.start();
+	final String busy = "http://localhost:" +t.getPort()+ "/tile/";
+	replies.clear();
+	for (int k = 0; k < 16; k++) {
+	    final int x = k % 4, y = k / 4;
+	    replies.add(clients.submit(new Callable<Integer>() {
+		public Integer call() throws IOException {
+		    return status(busy + "2/" +x+ "/" +y+ ".png" + query);
+		}
+	    }));
+	}
+	int rejected = 0;
+	for (Future<Integer> r : replies) {
+	    rejected += r.get() == 503 ? 1 : 0;
+	}
+	System.out.println("Burst of 16 tiles: " +rejected+ " answered 503");
+	clients.shutdown();
+	t.stop(0);
+    }
+
+    /**
+     * Fetches a URL and returns the HTTP status.
+     */
+    private static int status(String url) throws IOException {
+	HttpURLConnection c = (HttpURLConnection) new URL(url).openConnection();
+	int code = c.getResponseCode();
+	InputStream in = code < 400 ? c.getInputStream() : c.getErrorStream();
+	if (in != null) {
+	    in.readAllBytes();
+	    in.close();
+	}
+	c.disconnect();
+	return code;
+    }
+}
@@ -0,0 +1,366 @@
+/*
+ * PROJECT II: FractalTiles.java
+ *
+ * This class renders a Newton fractal as a pyramid of square PNG tiles
+ * addressed by z/x/y, as used by map viewers. Tile (0, 0, 0) covers the
+ * square with top-left corner origin and the given width; each zoom level z
+ * splits every tile of level z-1 into four, so that tile (z, x, y) covers
+ * the square of width width/2^z whose top-left corner is
+ *
+ *   origin + x*width/2^z - i*y*width/2^z.
+ *
+ * The corners are formed in double-double arithmetic, so that deep zoom
+ * levels land on exactly the right window (NewtonFractal then switches to
+ * its double-double path by itself).
+ *
+ * Rendered tiles are kept in two caches. On disk, each tile is stored in a
+ * file named by the SHA-256 hash of everything that determines its content
+ * (the co-efficients, the exact corner and width of the tile's own window,
+ * and the colour scheme). The key does not depend on the pyramid the tile
+ * belongs to, so tiles are shared between sessions and between pyramids
+ * that happen to overlap (e.g. tile (1, 0, 0) of one pyramid is tile
+ * (0, 0, 0) of a pyramid half its width with the same origin), and never
+ * go stale. In memory, the most
+ * recently used tiles are kept in a bounded LRU map. Every tile is rendered
+ * with the roots preset (see NewtonFractal.presetRoots()), so that a root
+ * has the same colour on every tile.
+ */
+
+import java.io.*;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+class FractalTiles {
+    /**
+     * Width and height of a tile in pixels.
+     */
+    public static final int TILESIZE = 256;
+
+    /**
+     * The deepest zoom level supported; beyond it x and y no longer fit in
+     * a long.
+     */
+    public static final int MAXZOOM = 62;
+
+    /**
+     * Version of the tile format, included in the cache keys so that a
+     * change to the renderer does not serve old tiles.
+     */
+    private static final String FORMAT = "newton-tile-2";
+
+    /**
+     * The polynomial, and the top-left corner and width of tile (0, 0, 0).
+     */
+    private final Polynomial p;
+    private final DDComplex origin;
+    private final double width;
+
+    /**
+     * The colour scheme; see NewtonFractal.
+     */
+    private final boolean colorIterations;
+
+    /**
+     * The directory of the on-disk cache.
+     */
+    private final File cacheDir;
+
+    /**
+     * The in-memory cache of encoded tiles, by cache key, in access order
+     * so that the least recently used tile is evicted first.
+     */
+    private final LinkedHashMap<String, byte[]> memory;
+
+    /**
+     * Number of worker threads used to render each tile.
+     */
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Counts of tiles served from memory, from disk, and rendered.
+     */
+    private long memoryHits, diskHits, renders;
+
+    // ========================================================
+    // Constructor function.
+    // ========================================================
+
+    /**
+     * Constructor: sets up a tile pyramid.
+     *
+     * @param p                The polynomial to generate the fractal of.
+     * @param origin           The top-left corner of tile (0, 0, 0).
+     * @param width            The width of tile (0, 0, 0).
+     * @param colorIterations  The colour scheme; see NewtonFractal.
+     * @param cacheDir         The directory of the on-disk cache, which is
+     *                         created if necessary.
+     * @param memoryTiles      The number of tiles kept in memory.
+     */
+    public FractalTiles(Polynomial p, DDComplex origin, double width, boolean colorIterations,
+			File cacheDir, final int memoryTiles) throws IOException {
+	if (memoryTiles < 0) {
+	    throw new RuntimeException("Memory cache size must be non-negative!");
+	}
+	this.p = p;
+	this.origin = origin;
+	this.width = width;
+	this.colorIterations = colorIterations;
+	this.cacheDir = cacheDir;
+	Files.createDirectories(cacheDir.toPath());
+	this.memory = new LinkedHashMap<String, byte[]>(16, 0.75f, true) {
+	    private static final long serialVersionUID = 1L;
+
+	    protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+		return size() > memoryTiles;
+	    }
+	};
+    }
+
+    // ========================================================
+    // Tile geometry.
+    // ========================================================
+
+    /**
+     * Returns the width of the tiles at zoom level z.
+     */
+    public double tileWidth(int z) {
+	return Math.scalb(width, -z);
+    }
+
+    /**
+     * Returns the top-left corner of tile (z, x, y), in double-double
+     * precision.
+     */
+    public DDComplex tileOrigin(int z, long x, long y) {
+	check(z, x, y);
+	// x and y may have more bits than a double, so they are split exactly
+	// into double-double numbers before scaling.
+	double w = tileWidth(z);
+	DDComplex dx = new DDComplex((double) x, (double) (x - (long) (double) x), 0.0, 0.0);
+	DDComplex dy = new DDComplex(0.0, 0.0, (double) -y, (double) -(y - (long) (double) y));
+	return origin.add(dx.add(dy).multiply(w));
+    }
+
+    /**
+     * Checks that (z, x, y) is a tile of the pyramid.
+     */
+    private static void check(int z, long x, long y) {
+	if (z < 0 || z > MAXZOOM) {
+	    throw new RuntimeException("Zoom level must be between 0 and " +MAXZOOM+ "!");
+	}
+	long n = 1L << z;
+	if (x < 0 || x >= n || y < 0 || y >= n) {
+	    throw new RuntimeException("Tile co-ordinates out of range!");
+	}
+    }
+
+    // ========================================================
+    // Tile rendering and caching.
+    // ========================================================
+
+    /**
+     * Sets the number of worker threads used to render each tile.
+     */
+    public void setParallelism(int parallelism) {
+	if (parallelism < 1) {
+	    throw new RuntimeException("Parallelism must be at least 1!");
+	}
+	this.parallelism = parallelism;
+    }
+
+    /**
+     * Returns tile (z, x, y) as the bytes of a PNG file, from the memory
+     * cache, the disk cache, or by rendering it, in that order of
+     * preference. May be called from several threads at once; two threads
+     * asking for the same uncached tile may both render it, but the result
+     * is the same.
+     *
+     * @param z  The zoom level.
+     * @param x  The column of the tile, 0 <= x < 2^z.
+     * @param y  The row of the tile, 0 <= y < 2^z.
+     * @return   The encoded tile.
+     */
+    public byte[] tile(int z, long x, long y) throws IOException {
+	byte[] png = cached(z, x, y);
+	if (png != null) {
+	    return png;
+	}
+	String key = key(z, x, y);
+	png = render(z, x, y, cacheFile(key));
+	synchronized (memory) {
+	    renders++;
+	    memory.put(key, png);
+	}
+	return png;
+    }
+
+    /**
+     * Returns tile (z, x, y) if it is in the memory or disk cache, without
+     * rendering it.
+     *
+     * @return The encoded tile, or null if it has not been rendered yet.
+     */
+    public byte[] cached(int z, long x, long y) throws IOException {
+	check(z, x, y);
+	String key = key(z, x, y);
+	synchronized (memory) {
+	    byte[] png = memory.get(key);
+	    if (png != null) {
+		memoryHits++;
+		return png;
+	    }
+	}
+
+	Path file = cacheFile(key);
+	if (!Files.exists(file)) {
+	    return null;
+	}
+	byte[] png = Files.readAllBytes(file);
+	synchronized (memory) {
+	    diskHits++;
+	    memory.put(key, png);
+	}
+	return png;
+    }
+
+    /**
+     * Returns the number of tiles rendered so far (as opposed to served from
+     * a cache).
+     */
+    public long renders() {
+	synchronized (memory) {
+	    return renders;
+	}
+    }
+
+    /**
+     * Renders tile (z, x, y) into the cache file and returns its bytes. The
+     * tile is written to a temporary file which is then moved into place, so
+     * that no reader ever sees a partial tile; if anything fails, the
+     * exception is passed on and nothing is cached.
+     */
+    private byte[] render(int z, long x, long y, Path file) throws IOException {
+	NewtonFractal f = new NewtonFractal(p, tileOrigin(z, x, y), tileWidth(z), TILESIZE, TILESIZE);
+	f.setParallelism(parallelism);
+	f.presetRoots();
+	ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+	try {
+	    f.streamFractal(bytes, colorIterations, TILESIZE);
+	} finally {
+	    f.close();
+	}
+	byte[] png = bytes.toByteArray();
+
+	Path tmp = Files.createTempFile(cacheDir.toPath(), "tile", ".tmp");
+	try {
+	    Files.write(tmp, png);
+	    try {
+		Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+	    } catch (AtomicMoveNotSupportedException e) {
+		Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+	    }
+	    return png;
+	} finally {
+	    Files.deleteIfExists(tmp);
+	}
+    }
+
+    /**
+     * Returns the cache file for a key, in a subdirectory named by the first
+     * two hex digits so that no directory grows too large.
+     */
+    private Path cacheFile(String key) throws IOException {
+	Path dir = cacheDir.toPath().resolve(key.substring(0, 2));
+	Files.createDirectories(dir);
+	return dir.resolve(key + ".png");
+    }
+
+    /**
+     * Computes the content address of tile (z, x, y): the SHA-256 hash, in
+     * hex, of the exact bits of everything the tile depends on. The window
+     * is hashed rather than the pyramid and (z, x, y), so that equal
+     * windows of different pyramids share a key; adding 0.0 turns a
+     * negative zero into a positive one, which renders the same.
+     */
+    private String key(int z, long x, long y) {
+	try {
+	    MessageDigest sha = MessageDigest.getInstance("SHA-256");
+	    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+	    DataOutputStream out = new DataOutputStream(bytes);
+	    out.writeUTF(FORMAT);
+	    double[] re = p.realCoeffs(), im = p.imagCoeffs();
+	    out.writeInt(re.length);
+	    for (int i = 0; i < re.length; i++) {
+		out.writeDouble(re[i]);
+		out.writeDouble(im[i]);
+	    }
+	    DDComplex corner = tileOrigin(z, x, y);
+	    out.writeDouble(corner.getReal() + 0.0);
+	    out.writeDouble(corner.getRealLo() + 0.0);
+	    out.writeDouble(corner.getImag() + 0.0);
+	    out.writeDouble(corner.getImagLo() + 0.0);
+	    out.writeDouble(tileWidth(z));
+	    out.writeBoolean(colorIterations);
+	    out.writeInt(TILESIZE);
+	    StringBuilder hex = new StringBuilder();
+	    for (byte b : sha.digest(bytes.toByteArray())) {
+		hex.append(String.format("%02x", b));
+	    }
+	    return hex.toString();
+	} catch (IOException | NoSuchAlgorithmException e) {
+	    // Neither can happen: the stream is in memory, and every JVM
+	    // provides SHA-256.
+	    throw new RuntimeException(e);
+	}
+    }
+
+    /**
+     * Returns a summary of how tiles have been served so far.
+     */
+    public String stats() {
+	synchronized (memory) {
+	    return memoryHits+ " from memory, " +diskHits+ " from disk, " +renders+ " rendered";
+	}
+    }
+
+    // ========================================================
+    // Tester function.
+    // ========================================================
+
+    public static void main(String[] args) throws IOException {
+	Complex[] coeff = new Complex[] { new Complex(1.0,0.0), new Complex(3.0,0.0),
+					  new Complex(-5.0,-2.0), new Complex(0.0,-3.0),
+					  new Complex(0.0,0.0), new Complex(1.0,0.0) };
+	Polynomial p = new Polynomial(coeff);
+	File dir = new File("tile-cache");
+	FractalTiles tiles = new FractalTiles(p, new DDComplex(-4.0, 4.0), 8.0, true, dir, 32);
+
+	// Levels 0 to 2 twice over: the second pass comes from memory.
+	for (int pass = 0; pass < 2; pass++) {
+	    long start = System.nanoTime();
+	    for (int z = 0; z <= 2; z++) {
+		for (long x = 0; x < (1L << z); x++) {
+		    for (long y = 0; y < (1L << z); y++) {
+			tiles.tile(z, x, y);
+		    }
+		}
+	    }
+	    System.out.println("Pass " +pass+ ": " +(System.nanoTime() - start) / 1.0e6+ " ms, " +tiles.stats());
+	}
+
+	// A fresh pyramid over the same cache finds every tile on disk.
+	FractalTiles again = new FractalTiles(p, new DDComplex(-4.0, 4.0), 8.0, true, dir, 32);
+	again.tile(2, 1, 3);
+	System.out.println("New session: " +again.stats());
+
+	// A pyramid half the width shares its tiles with level 1 of the first.
+	FractalTiles half = new FractalTiles(p, new DDComplex(-4.0, 4.0), 4.0, true, dir, 32);
+	half.tile(0, 0, 0);
+	half.tile(1, 1, 1);
+	System.out.println("Half-width pyramid: " +half.stats());
+	System.out.println("Tile (40, 1, 2) origin: " +again.tileOrigin(40, 1, 2));
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * PROJECT II: Multipoint.java
+ *
+ * Evaluation of one Polynomial at many points.
+ *
+ * For arbitrary points, evaluate() runs Horner's rule over blocks of BLOCK
+ * points at a time with the co-efficient loop outermost. This is still
+ * O(nN) work for N points, not quasi-linear, but each co-efficient is
+ * loaded once per block rather than once per point, so that for high
+ * degree polynomials (whose co-efficients do not fit in cache) the memory
+ * traffic falls by a factor of BLOCK, and the inner loop over the block is
+ * free of dependencies and vectorises.
+ *
+ * For the common case of points equally spaced on a circle about the origin
+ * (e.g. contours used for root counting), evaluateOnCircle() uses the FFT,
+ * which costs O((n + N) log N) rather than O(nN). Polynomial.evaluateAll()
+ * recognises such points (see circleRadius()) and takes this path itself.
+ *
+ * The classical subproduct-tree algorithm (pushing P mod (z - x_0)...(z - x_k)
+ * down a tree of products) is asymptotically faster for arbitrary points,
+ * but in double precision the co-efficients of the products overflow or
+ * swamp the values for all but very small blocks, so it is not used here.
+ */
+
+import java.util.Arrays;
+import java.util.Random;
+
+class Multipoint {
+    /**
+     * Number of points evaluated together by evaluate().
+     */
+    public static final int BLOCK = 64;
+
+    /**
+     * Evaluates p at the points re[k] + i*im[k], writing P(z_k) to
+     * outRe[k] + i*outIm[k]. The output arrays may be the input arrays.
+     *
+     * @param p      The polynomial to evaluate.
+     * @param re     Real parts of the points.
+     * @param im     Imaginary parts of the points.
+     * @param outRe  Receives the real parts of the values.
+     * @param outIm  Receives the imaginary parts of the values.
+     */
+    public static void evaluate(Polynomial p, double[] re, double[] im,
+				double[] outRe, double[] outIm) {
+	int m = re.length;
+	if (im.length != m || outRe.length < m || outIm.length < m) {
+	    throw new RuntimeException("Point and value arrays must have the same length!");
+	}
+	double[] aRe = p.realCoeffs(), aIm = p.imagCoeffs();
+	int n = aRe.length - 1;
+	double[] x = new double[BLOCK], y = new double[BLOCK];
+	double[] pr = new double[BLOCK], pi = new double[BLOCK];
+
+	for (int off = 0; off < m; off += BLOCK) {
+	    int len = Math.min(BLOCK, m - off);
+	    for (int l = 0; l < len; l++) {
+		x[l]  = re[off + l];
+		y[l]  = im[off + l];
+		pr[l] = aRe[n];
+		pi[l] = aIm[n];
+	    }
+	    for (int i = n - 1; i >= 0; i--) {
+		double cr = aRe[i], ci = aIm[i];
+		for (int l = 0; l < len; l++) {
+		    double t = x[l]*pr[l] - y[l]*pi[l] + cr;
+		    pi[l] = x[l]*pi[l] + y[l]*pr[l] + ci;
+		    pr[l] = t;
+		}
+	    }
+	    System.arraycopy(pr, 0, outRe, off, len);
+	    System.arraycopy(pi, 0, outIm, off, len);
+	}
+    }
+
+    /**
+     * Evaluates p at the N points r*exp(2 pi i k/N), 0 <= k < N, where N is a
+     * power of two. Since P(r w^k) = sum_j (a_j r^j) w^(jk) with w = exp(2 pi
+     * i/N), the values are the (inverse) discrete Fourier transform of the
+     * scaled co-efficients, folded modulo N if the degree is at least N.
+     *
+     * If r^n overflows or underflows the values are computed with evaluate()
+     * instead.
+     *
+     * @param p      The polynomial to evaluate.
+     * @param r      The (positive) radius of the circle.
+     * @param outRe  Receives the real parts of the N values.
+     * @param outIm  Receives the imaginary parts of the N values.
+     */
+    public static void evaluateOnCircle(Polynomial p, double r, double[] outRe, double[] outIm) {
+	int N = outRe.length;
+	if (outIm.length != N || N == 0 || (N & (N - 1)) != 0) {
+	    throw new RuntimeException("Number of points on the circle must be a power of two!");
+	}
+	double[] aRe = p.realCoeffs(), aIm = p.imagCoeffs();
+	int n = aRe.length - 1;
+
+	double scale = Math.pow(r, n);
+	if (!(r > 0) || scale == 0 || Double.isInfinite(scale)) {
+	    double[] re = new double[N], im = new double[N];
+	    for (int k = 0; k < N; k++) {
+		re[k] = r*Math.cos(2*Math.PI*k/N);
+		im[k] = r*Math.sin(2*Math.PI*k/N);
+	    }
+	    evaluate(p, re, im, outRe, outIm);
+	    return;
+	}
+
+	Arrays.fill(outRe, 0.0);
+	Arrays.fill(outIm, 0.0);
+	double rj = 1.0;
+	for (int j = 0; j <= n; j++) {
+	    outRe[j & (N - 1)] += aRe[j]*rj;
+	    outIm[j & (N - 1)] += aIm[j]*rj;
+	    rj *= r;
+	}
+	Convolution.transform(outRe, outIm, true);
+    }
+
+    /**
+     * The smallest number of points, and the smallest degree, for which
+     * circleRadius() looks for points on a circle: below either, blocked
+     * Horner's rule is as fast as the FFT.
+     */
+    public static final int CIRCLE = 64;
+
+    /**
+     * Tests whether the points re[k] + i*im[k] are r*exp(2 pi i k/N), k = 0,
+     * ..., N-1, for a power of two N, up to a few units in the last place of
+     * r, so that evaluateOnCircle() gives their values as accurately as
+     * Horner's rule would.
+     *
+     * @param degree  The degree of the polynomial to be evaluated.
+     * @return        The radius r, or 0 if the points are not of this form
+     *                (or too few, or the degree too low, for the FFT to pay).
+     */
+    public static double circleRadius(double[] re, double[] im, int degree) {
+	int N = re.length;
+	if (N < CIRCLE || degree < CIRCLE || (N & (N - 1)) != 0 || im.length != N) {
+	    return 0.0;
+	}
+	double r = re[0];
+	if (!(r > 0) || im[0] != 0 || Double.isInfinite(r)) {
+	    return 0.0;
+	}
+	double tol = 8*Math.ulp(r);
+	for (int k = 1; k < N; k++) {
+	    double t = 2*Math.PI*k/N;
+	    if (Math.abs(re[k] - r*Math.cos(t)) > tol || Math.abs(im[k] - r*Math.sin(t)) > tol) {
+		return 0.0;
+	    }
+	}
+	return r;
+    }
+
+    // ========================================================
+    // Tester function.
+    // ========================================================
+
+    public static void main(String[] args) {
+	// A random polynomial of degree 4095, evaluated at 2^16 random points
+	// in the unit disk and at 2^16 points on the unit circle.
+	Random rand = new Random(1);
+	int n = 4095, m = 1 << 16;
+	Complex[] c = new Complex[n + 1];
+	for (int i = 0; i <= n; i++) {
+	    c[i] = new Complex(rand.nextGaussian(), rand.nextGaussian());
+	}
+	Polynomial p = new Polynomial(c);
+
+	double[] re = new double[m], im = new double[m];
+	for (int k = 0; k < m; k++) {
+	    double r = Math.sqrt(rand.nextDouble()), t = 2*Math.PI*rand.nextDouble();
+	    re[k] = r*Math.cos(t);
+	    im[k] = r*Math.sin(t);
+	}
+	double[] fr = new double[m], fi = new double[m];
+
+	long t0 = System.nanoTime();
+	evaluate(p, re, im, fr, fi);
+	long t1 = System.nanoTime();
+	double err = 0.0;
+	for (int k = 0; k < m; k++) {
+	    Complex v = p.evaluate(new Complex(re[k], im[k]));
+	    err = Math.max(err, Math.hypot(fr[k] - v.getReal(), fi[k] - v.getImag()));
+	}
+	long t2 = System.nanoTime();
+	System.out.println("Blocked Horner:  " +(t1 - t0)/1e6+ " ms");
+	System.out.println("evaluate() loop: " +(t2 - t1)/1e6+ " ms  (max diff " +err+ ")");
+
+	t0 = System.nanoTime();
+	evaluateOnCircle(p, 1.0, fr, fi);
+	t1 = System.nanoTime();
+	err = 0.0;
+	for (int k = 0; k < m; k += 97) {
+	    Complex v = p.evaluate(new Complex(Math.cos(2*Math.PI*k/m), Math.sin(2*Math.PI*k/m)));
+	    err = Math.max(err, Math.hypot(fr[k] - v.getReal(), fi[k] - v.getImag()));
+	}
+	System.out.println("FFT on circle:   " +(t1 - t0)/1e6+ " ms  (max diff " +err+ ")");
+
+	// The same points passed to Polynomial.evaluateAll() take the FFT path.
+	for (int k = 0; k < m; k++) {
+	    re[k] = Math.cos(2*Math.PI*k/m);
+	    im[k] = Math.sin(2*Math.PI*k/m);
+	}
+	t0 = System.nanoTime();
+	p.evaluateAll(re, im, re, im);
+	t1 = System.nanoTime();
+	err = 0.0;
+	for (int k = 0; k < m; k++) {
+	    err = Math.max(err, Math.hypot(re[k] - fr[k], im[k] - fi[k]));
+	}
+	System.out.println("evaluateAll():   " +(t1 - t0)/1e6+ " ms  (max diff from FFT " +err+ ")");
+    }
+}
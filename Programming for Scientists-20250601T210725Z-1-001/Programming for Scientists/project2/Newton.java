@@ -35,6 +35,47 @@ class Newton {
      */
     public static final double TOL = 1.0e-10;
 
+    /**
+     * The longest period of an attracting cycle which iterate() and solve()
+     * detect. The last CYCLE iterates are kept in a ring buffer and each new
+     * iterate is compared with them.
+     */
+    public static final int CYCLE = 8;
+
+    /**
+     * Length of the scratch buffer needed by run() and by the solve()
+     * methods taking one: six doubles for Polynomial.taylor() and a ring of
+     * CYCLE complex iterates.
+     */
+    public static final int SCRATCH = 6 + 2*CYCLE;
+
+    /**
+     * The maximum number of iterations and the tolerance used by this
+     * object. They default to MAXITER and TOL but may be chosen per instance
+     * with the four-argument constructor.
+     */
+    private int maxIter = MAXITER;
+    private double tol  = TOL;
+
+    /**
+     * Iteration methods which can be selected with setMethod():
+     *
+     *   NEWTON:    the plain Newton-Raphson update z - f/f'.
+     *   HALLEY:    Halley's method z - 2ff'/(2f'^2 - ff''), which converges
+     *              cubically to simple roots.
+     *   SCHROEDER: Schroeder's multiplicity-corrected update
+     *              z - ff'/(f'^2 - ff''), which converges quadratically even
+     *              to multiple roots.
+     *   DAMPED:    the relaxed update z - lambda*f/f', where lambda is set
+     *              by setRelaxation(). lambda < 1 damps the step, while
+     *              lambda = m restores quadratic convergence to a root of
+     *              known multiplicity m.
+     */
+    public static final int NEWTON    = 0;
+    public static final int HALLEY    = 1;
+    public static final int SCHROEDER = 2;
+    public static final int DAMPED    = 3;
+
     /**
      * The polynomial we wish to apply the Newton-Raphson method to.
      */
@@ -45,25 +86,74 @@ class Newton {
      */
     private Polynomial fp;
 
+    /**
+     * An evaluator for f and f' specialised to the co-efficients of f,
+     * used by the NEWTON and DAMPED methods.
+     */
+    private CompiledPolynomial compiled;
+
+    /**
+     * The iteration method in use; one of NEWTON, HALLEY, SCHROEDER or
+     * DAMPED.
+     */
+    private int method = NEWTON;
+
+    /**
+     * The relaxation factor lambda used by the DAMPED method.
+     */
+    private double relaxation = 1.0;
+
+    /**
+     * An optional table of known roots of f, set by setRootTable(). For each
+     * root zeta we store its position, the radius of a ball about it from
+     * which Newton-Raphson is certified to converge to it, and the constant
+     * c = |f''(zeta) / 2f'(zeta)| of its quadratic convergence.
+     */
+    private double[] tableRe, tableIm, tableRadius, tableC;
+
+    /**
+     * Scratch buffer for Polynomial.taylor(), holding f(z), f'(z) and, for
+     * the higher-order methods, f''(z), followed by the ring of recent
+     * iterates. Only used by iterate(); solve() allocates its own so that it
+     * is reentrant.
+     */
+    private double[] taylor = new double[SCRATCH];
+
     /**
      * A root of the polynomial f corresponding to the root found by the
      * iterate() function below.
      */
     private Complex root;
+
+    /**
+     * Real and imaginary parts of the root found by the most recent call to
+     * either version of iterate(). Kept as primitives so that the hot path
+     * does not need to allocate a Complex.
+     */
+    private double rootRe, rootIm;
     
     /**
      * The number of iterations required to reach within TOL of the root.
      */
     private int numIterations;
 
+    /**
+     * The period of the attracting cycle detected by the last call to
+     * iterate(), if err is -3.
+     */
+    private int period;
+
     /**
      * An integer that signifies errors that may occur in the root finding
      * process.
      *
      * Possible values are:
      *   =  0: Nothing went wrong.
-     *   = -1: Derivative went to zero during the algorithm.
-     *   = -2: Reached MAXITER iterations.
+     *   = -1: Derivative (or, for HALLEY and SCHROEDER, the denominator
+     *         of the update) went to zero during the algorithm.
+     *   = -2: Reached maxIter (by default MAXITER) iterations.
+     *   = -3: The iterates fell into an attracting cycle of period between 2
+     *         and CYCLE, given by getPeriod().
      */
     private int err;
     
@@ -79,6 +169,39 @@ class Newton {
     public Newton(Polynomial p) {
 	f  = p;
 	fp = p.derivative();
+	compiled = CompiledPolynomial.compile(p);
+    }
+
+    /**
+     * Constructor which also selects the iteration method.
+     *
+     * @param p       The polynomial used for the iteration.
+     * @param method  One of NEWTON, HALLEY, SCHROEDER or DAMPED.
+     */
+    public Newton(Polynomial p, int method) {
+	this(p);
+	setMethod(method);
+    }
+
+    /**
+     * Constructor which selects the iteration method, the maximum number of
+     * iterations and the tolerance.
+     *
+     * @param p        The polynomial used for the iteration.
+     * @param method   One of NEWTON, HALLEY, SCHROEDER or DAMPED.
+     * @param maxIter  The maximum number of iterations (at least 2).
+     * @param tol      The (positive) tolerance on the step size.
+     */
+    public Newton(Polynomial p, int method, int maxIter, double tol) {
+	this(p, method);
+	if (maxIter < 2) {
+	    throw new RuntimeException("Maximum number of iterations must be at least 2!");
+	}
+	if (!(tol > 0)) {
+	    throw new RuntimeException("Tolerance must be positive!");
+	}
+	this.maxIter = maxIter;
+	this.tol     = tol;
     }
 
     // ========================================================
@@ -99,6 +222,14 @@ class Newton {
 	return numIterations;
     }
     
+    /**
+     * Returns the period of the cycle found by the last call to iterate(),
+     * if getError() is -3.
+     */
+    public int getPeriod() {
+	return period;
+    }
+
     /**
      * Returns the current value of the root instance variable.
      */
@@ -106,6 +237,125 @@ class Newton {
 	return root;
     }
 
+    /**
+     * Returns the real part of the root found by the last call to iterate().
+     */
+    public double getRootReal() {
+	return rootRe;
+    }
+
+    /**
+     * Returns the imaginary part of the root found by the last call to
+     * iterate().
+     */
+    public double getRootImag() {
+	return rootIm;
+    }
+
+    /**
+     * Returns the maximum number of iterations used by this object.
+     */
+    public int getMaxIter() {
+	return maxIter;
+    }
+
+    /**
+     * Returns the tolerance used by this object.
+     */
+    public double getTol() {
+	return tol;
+    }
+
+    /**
+     * Returns the iteration method in use.
+     */
+    public int getMethod() {
+	return method;
+    }
+
+    /**
+     * Selects the iteration method used by iterate() and solve(). This
+     * should be done before the object is shared between threads.
+     *
+     * @param method  One of NEWTON, HALLEY, SCHROEDER or DAMPED.
+     */
+    public void setMethod(int method) {
+	if (method < NEWTON || method > DAMPED) {
+	    throw new RuntimeException("Unknown iteration method " +method+ "!");
+	}
+	this.method = method;
+    }
+
+    /**
+     * Returns the relaxation factor used by the DAMPED method.
+     */
+    public double getRelaxation() {
+	return relaxation;
+    }
+
+    /**
+     * Sets the relaxation factor lambda used by the DAMPED method. This
+     * should be done before the object is shared between threads.
+     *
+     * @param lambda  The (positive) relaxation factor.
+     */
+    public void setRelaxation(double lambda) {
+	if (!(lambda > 0)) {
+	    throw new RuntimeException("Relaxation factor must be positive!");
+	}
+	this.relaxation = lambda;
+    }
+
+    /**
+     * Supplies the roots of f so that the NEWTON method can stop early. By
+     * Smale's gamma theorem, if
+     *
+     *   gamma(zeta) = max_{k >= 2} |f^(k)(zeta) / (k! f'(zeta))|^(1/(k-1))
+     *
+     * then from any z with |z - zeta| < (3 - sqrt(7)) / (2 gamma(zeta))
+     * Newton-Raphson converges quadratically to zeta. As soon as an iterate
+     * enters such a ball the iteration stops and reports zeta, with the
+     * number of iterations estimated from the asymptotic error recursion
+     * e <- c e^2 until the step falls below the tolerance. The root reached
+     * is the same as without the table; only the work is saved.
+     *
+     * Roots with f'(zeta) = 0 (multiple roots) get no ball. This should be
+     * called before the object is shared between threads.
+     *
+     * @param roots  The roots of f (e.g. from Polynomial.roots()), or null
+     *               to switch early termination off.
+     */
+    public void setRootTable(Complex[] roots) {
+	if (roots == null) {
+	    tableRe = tableIm = tableRadius = tableC = null;
+	    return;
+	}
+	int n = f.degree(), m = roots.length;
+	double[] re = new double[m], im = new double[m], radius = new double[m], c = new double[m];
+	double[] t = new double[2*(n + 1)];
+	for (int j = 0; j < m; j++) {
+	    re[j] = roots[j].getReal();
+	    im[j] = roots[j].getImag();
+	    f.taylor(re[j], im[j], n, t);
+	    double d1 = Math.hypot(t[2], t[3]);
+	    if (d1 == 0) {
+		continue;
+	    }
+	    double gamma = 0.0, fact = 1.0;
+	    for (int k = 2; k <= n; k++) {
+		fact *= k;
+		double g = Math.pow(Math.hypot(t[2*k], t[2*k+1]) / (fact*d1), 1.0/(k - 1));
+		gamma = Math.max(gamma, g);
+	    }
+	    c[j]      = Math.hypot(t[4], t[5]) / (2*d1);
+	    radius[j] = gamma == 0 ? Double.POSITIVE_INFINITY : (3 - Math.sqrt(7)) / (2*gamma);
+	}
+	tableRe     = re;
+	tableIm     = im;
+	tableRadius = radius;
+	tableC      = c;
+    }
+
     /**
      * Returns the polynomial associated with this object.
      */
@@ -125,8 +375,9 @@ class Newton {
     // ========================================================
     
     /**
-     * Given a complex number z0, apply Newton-Raphson to the polynomial f in
-     * order to find a root within tolerance TOL.
+     * Given a complex number z0, apply Newton-Raphson (or the method chosen
+     * by setMethod()) to the polynomial f in order to find a root within
+     * tolerance TOL.
      *
      * One of three things may occur:
      *
@@ -141,43 +392,398 @@ class Newton {
      * @param z0  The initial starting point for the algorithm.
      */
     public void iterate(Complex z0) {
-	Complex fz, fpz;
-	Complex[] zN = new Complex[MAXITER];
-	boolean converge = false;
-	zN[0] = z0;
-
-	// Store in array iterations of Newton-Raphson up to MAXITER.
-	for (int i = 1; i < MAXITER; i++) {
-	    fz  = f.evaluate(zN[i-1]);
-	    fpz = fp.evaluate(zN[i-1]);
-
-	    // If derivative at zN is zero, break and return error.
-	    // Not really converging - prevent err = -2 from overridding.
-	    if (fpz.abs() == 0) {
-		converge = true; 
-		err = -1;
-		break;
-	    } 
-
-	    // Newton-Raphson.
-	    zN[i] = zN[i-1].add((fz.divide(fpz)).minus());
-
-	    // If iterations within tolerance, store root and iteration.
-	    if ((zN[i].add(zN[i-1].minus())).abs() < TOL) {
-		converge = true;
-		root = zN[i];
-		numIterations = i;
-		err = 0;
-		break;
+	if (iterate(z0.getReal(), z0.getImag()) == 0) {
+	    root = new Complex(rootRe, rootIm);
+	}
+    }
+
+    /**
+     * Primitive version of iterate(Complex), which is used by it. Like
+     * iterate(Complex) it stores its results in this object, so it must not
+     * be called from several threads at once; use solve() for that. Only the
+     * current iterate is kept (in the locals zr, zi) and f, fp are evaluated
+     * together by Polynomial.taylor() directly on the unboxed co-efficients
+     * of f, so that no objects are created.
+     *
+     * On success the root is available through getRootReal() and
+     * getRootImag(); getRoot() is only updated by iterate(Complex).
+     *
+     * @param re  Real part of the initial starting point.
+     * @param im  Imaginary part of the initial starting point.
+     * @return    The error code, which is also stored in err.
+     */
+    public int iterate(double re, double im) {
+	double[] t = taylor;
+	int status = run(re, im, t);
+	if (status > 0) {
+	    rootRe        = t[0];
+	    rootIm        = t[1];
+	    numIterations = status;
+	    err           = 0;
+	} else {
+	    err = status;
+	    if (err == -3) {
+		period = (int) t[0];
 	    }
 	}
+	return err;
+    }
+
+    /**
+     * Double-double version of iterate(Complex), for starting points which
+     * are too close together to be told apart as doubles (deep zooms of the
+     * fractal). The iteration is carried out in DDComplex arithmetic, using
+     * Polynomial.taylor(DDComplex, int); the root found is rounded to a
+     * Complex and stored, with the other results, as by iterate(Complex).
+     *
+     * @param z0  The initial starting point for the algorithm.
+     */
+    public void iterate(DDComplex z0) {
+	double[] t = taylor;
+	int status = runDD(z0, t);
+	if (status > 0) {
+	    rootRe        = t[0];
+	    rootIm        = t[1];
+	    root          = new Complex(rootRe, rootIm);
+	    numIterations = status;
+	    err           = 0;
+	} else {
+	    err = status;
+	    if (err == -3) {
+		period = (int) t[0];
+	    }
+	}
+    }
+
+    /**
+     * Reentrant version of iterate(Complex): the outcome is returned as an
+     * immutable NewtonResult and nothing is stored in this object, so one
+     * Newton may be shared between threads.
+     *
+     * @param z0  The initial starting point for the algorithm.
+     * @return    The outcome of the iteration.
+     */
+    public NewtonResult solve(Complex z0) {
+	return solve(z0.getReal(), z0.getImag());
+    }
+
+    /**
+     * Reentrant version of iterate(double, double); see solve(Complex).
+     *
+     * @param re  Real part of the initial starting point.
+     * @param im  Imaginary part of the initial starting point.
+     * @return    The outcome of the iteration.
+     */
+    public NewtonResult solve(double re, double im) {
+	double[] t = new double[SCRATCH];
+	return result(solve(re, im, t, t), t);
+    }
+
+    /**
+     * Reentrant, sink-based version of iterate(double, double). The root is
+     * written to root[0] (real part) and root[1] (imaginary part), and the
+     * status is returned as a single int, so that apart from a small scratch
+     * buffer nothing is allocated and nothing is stored in this object.
+     *
+     * @param re    Real part of the initial starting point.
+     * @param im    Imaginary part of the initial starting point.
+     * @param root  Buffer of length at least 2 receiving the root. If a
+     *              cycle is detected, root[0] receives its period instead.
+     * @return      The number of iterations (> 0) if the iteration
+     *              converged, otherwise the (negative) error code.
+     */
+    public int solve(double re, double im, double[] root) {
+	return solve(re, im, root, new double[SCRATCH]);
+    }
+
+    /**
+     * As solve(double, double, double[]), but using the caller's scratch
+     * buffer, so that nothing at all is allocated. Each thread needs a
+     * buffer of its own.
+     *
+     * @param re       Real part of the initial starting point.
+     * @param im       Imaginary part of the initial starting point.
+     * @param root     Buffer of length at least 2 receiving the root (or the
+     *                 period of a cycle); may be the scratch buffer itself.
+     * @param scratch  Buffer of length at least SCRATCH.
+     * @return         The number of iterations (> 0) if the iteration
+     *                 converged, otherwise the (negative) error code.
+     */
+    public int solve(double re, double im, double[] root, double[] scratch) {
+	int status = run(re, im, scratch);
+	copyRoot(status, scratch, root);
+	return status;
+    }
+
+    /**
+     * Reentrant version of iterate(DDComplex); see solve(Complex).
+     *
+     * @param z0  The initial starting point for the algorithm.
+     * @return    The outcome of the iteration.
+     */
+    public NewtonResult solve(DDComplex z0) {
+	double[] t = new double[SCRATCH];
+	return result(solve(z0, t, t), t);
+    }
+
+    /**
+     * Double-double version of solve(double, double, double[], double[]).
+     * The root is rounded to double precision.
+     *
+     * @param z0       The initial starting point for the algorithm.
+     * @param root     Buffer of length at least 2 receiving the root (or the
+     *                 period of a cycle); may be the scratch buffer itself.
+     * @param scratch  Buffer of length at least SCRATCH.
+     * @return         The number of iterations (> 0) if the iteration
+     *                 converged, otherwise the (negative) error code.
+     */
+    public int solve(DDComplex z0, double[] root, double[] scratch) {
+	int status = runDD(z0, scratch);
+	copyRoot(status, scratch, root);
+	return status;
+    }
+
+    /**
+     * Copies the outcome left in the scratch buffer by run() or runDD() to
+     * root: the root on success, the period of a cycle.
+     */
+    private static void copyRoot(int status, double[] t, double[] root) {
+	if (status > 0) {
+	    root[0] = t[0];
+	    root[1] = t[1];
+	} else if (status == -3) {
+	    root[0] = t[0];
+	}
+    }
 
-	// If not within tolerance, converge is false - return error.
-	if (converge == false) {
-	    err = -2;
+    /**
+     * Packs a status and the outcome copied by copyRoot() into a
+     * NewtonResult.
+     */
+    private static NewtonResult result(int status, double[] root) {
+	if (status > 0) {
+	    return new NewtonResult(root[0], root[1], status, 0);
+	} else if (status == -3) {
+	    return new NewtonResult(0.0, 0.0, 0, status, (int) root[0]);
 	}
+	return new NewtonResult(0.0, 0.0, 0, status);
+    }
+
+    /**
+     * The iteration shared by iterate() and solve(). It only touches its
+     * arguments and local variables, and so is reentrant.
+     *
+     * @param re  Real part of the initial starting point.
+     * @param im  Imaginary part of the initial starting point.
+     * @param t   Scratch buffer of length SCRATCH; on success the root is
+     *            left in t[0] and t[1], and if a cycle is detected its
+     *            period is left in t[0].
+     * @return    The number of iterations (> 0) on success, otherwise the
+     *            (negative) error code.
+     */
+    private int run(double re, double im, double[] t) {
+	int k = (method == HALLEY || method == SCHROEDER) ? 2 : 1;
+	boolean certify = method == NEWTON && tableRe != null;
+	double zr = re, zi = im;
+
+	// Ring of the last CYCLE iterates, z_j stored at 6 + 2 (j mod CYCLE).
+	t[6] = zr;
+	t[7] = zi;
+
+	for (int i = 1; i < maxIter; i++) {
+	    // Stop early if z is certified to converge to a known root.
+	    if (certify) {
+		int n = certified(zr, zi, i, t);
+		if (n > 0) {
+		    return n;
+		} else if (n < 0) {
+		    certify = false;
+		}
+	    }
+
+	    // f(z), fp(z) (and f''(z) if needed) in a single pass.
+	    if (k == 1) {
+		compiled.evaluateWithDerivative(zr, zi, t);
+	    } else {
+		f.taylor(zr, zi, k, t);
+	    }
+	    double fr = t[0], fi = t[1], pr = t[2], pi = t[3];
+
+	    // The update is z - num/den, where for NEWTON and DAMPED num = f
+	    // and den = f'.
+	    double nr = fr, ni = fi, dr = pr, di = pi;
+	    if (k == 2) {
+		// ff' and f'^2 - ff''.
+		double ar = fr*pr - fi*pi, ai = fr*pi + fi*pr;
+		dr = pr*pr - pi*pi - (fr*t[4] - fi*t[5]);
+		di = 2*pr*pi - (fr*t[5] + fi*t[4]);
+		nr = ar;
+		ni = ai;
+		if (method == HALLEY) {
+		    // 2ff' and 2f'^2 - ff'' = (f'^2 - ff'') + f'^2.
+		    nr = 2*ar;
+		    ni = 2*ai;
+		    dr += pr*pr - pi*pi;
+		    di += 2*pr*pi;
+		}
+	    }
+
+	    // If denominator at z is zero, return error.
+	    double mod2 = dr*dr + di*di;
+	    if (mod2 == 0) {
+		return -1;
+	    }
+
+	    // Step num/den, relaxed if required.
+	    double inv = 1/mod2;
+	    double sr  = (nr*dr + ni*di)*inv;
+	    double si  = (ni*dr - nr*di)*inv;
+	    if (method == DAMPED) {
+		sr *= relaxation;
+		si *= relaxation;
+	    }
+	    double wr = zr - sr, wi = zi - si;
+
+	    // If step within tolerance, store root and iteration.
+	    double er = wr - zr, ei = wi - zi;
+	    zr = wr;
+	    zi = wi;
+	    if (Math.sqrt(er*er + ei*ei) < tol) {
+		t[0] = zr;
+		t[1] = zi;
+		return i;
+	    }
+
+	    // If z_i has returned to within tol of z_(i-p), the iterates have
+	    // fallen into a cycle of period p.
+	    for (int p = 2; p <= CYCLE && p <= i; p++) {
+		int q = 6 + 2*((i - p) % CYCLE);
+		er = zr - t[q];
+		ei = zi - t[q+1];
+		if (Math.sqrt(er*er + ei*ei) < tol) {
+		    t[0] = p;
+		    return -3;
+		}
+	    }
+	    int q = 6 + 2*(i % CYCLE);
+	    t[q]   = zr;
+	    t[q+1] = zi;
+	}
+
+	// Not within tolerance after maxIter iterations.
+	return -2;
     }
     
+    /**
+     * Double-double version of run(), with the same update rules, stopping
+     * criteria and status codes. Only the steps and distances compared
+     * against tol are rounded to doubles.
+     *
+     * @param z0  The initial starting point.
+     * @param t   Scratch buffer of length SCRATCH, used as by run().
+     * @return    The number of iterations (> 0) on success, otherwise the
+     *            (negative) error code.
+     */
+    private int runDD(DDComplex z0, double[] t) {
+	int k = (method == HALLEY || method == SCHROEDER) ? 2 : 1;
+	boolean certify = method == NEWTON && tableRe != null;
+	DDComplex z = z0;
+
+	// Ring of the last CYCLE iterates, z_j stored at j mod CYCLE.
+	DDComplex[] ring = new DDComplex[CYCLE];
+	ring[0] = z;
+
+	for (int i = 1; i < maxIter; i++) {
+	    // Once z is in a certified ball it no longer needs the extra
+	    // precision, so the double-precision test can be used as is.
+	    if (certify) {
+		int n = certified(z.getReal(), z.getImag(), i, t);
+		if (n > 0) {
+		    return n;
+		} else if (n < 0) {
+		    certify = false;
+		}
+	    }
+
+	    DDComplex[] d = f.taylor(z, k);
+	    DDComplex num = d[0], den = d[1];
+	    if (k == 2) {
+		// ff' and f'^2 - ff''.
+		DDComplex fp2 = d[1].multiply(d[1]);
+		num = d[0].multiply(d[1]);
+		den = fp2.add(d[0].multiply(d[2]).minus());
+		if (method == HALLEY) {
+		    num = num.multiply(2.0);
+		    den = den.add(fp2);
+		}
+	    }
+
+	    // If denominator at z is zero, return error.
+	    if (den.getReal() == 0 && den.getImag() == 0) {
+		return -1;
+	    }
+
+	    DDComplex step = num.divide(den);
+	    if (method == DAMPED) {
+		step = step.multiply(relaxation);
+	    }
+	    z = z.add(step.minus());
+
+	    // If step within tolerance, store root and iteration.
+	    if (step.abs() < tol) {
+		t[0] = z.getReal();
+		t[1] = z.getImag();
+		return i;
+	    }
+
+	    // Cycle detection, as in run().
+	    for (int p = 2; p <= CYCLE && p <= i; p++) {
+		if (z.add(ring[(i - p) % CYCLE].minus()).abs() < tol) {
+		    t[0] = p;
+		    return -3;
+		}
+	    }
+	    ring[i % CYCLE] = z;
+	}
+
+	// Not within tolerance after maxIter iterations.
+	return -2;
+    }
+
+    /**
+     * Checks whether the iterate z = zr + i*zi, about to be used for
+     * iteration i, lies in the certified ball of a root in the table. If so
+     * the root is stored in t[0], t[1] and the estimated iteration at which
+     * plain Newton-Raphson would have stopped is returned.
+     *
+     * @return The estimated number of iterations, 0 if z is not in any
+     *         ball, or -1 if the estimate is so close to maxIter that the
+     *         iteration should be finished without early termination
+     *         (since the estimate may be out by one).
+     */
+    private int certified(double zr, double zi, int i, double[] t) {
+	for (int j = 0; j < tableRe.length; j++) {
+	    double dr = zr - tableRe[j], di = zi - tableIm[j];
+	    double e  = Math.sqrt(dr*dr + di*di);
+	    if (e < tableRadius[j]) {
+		// The step taken at iteration i + s is about the error e
+		// after s steps, and Newton stops once it is below tol.
+		int s = 0;
+		while (e >= tol && i + s < maxIter) {
+		    e = tableC[j]*e*e;
+		    s++;
+		}
+		if (i + s >= maxIter - 1) {
+		    return -1;
+		}
+		t[0] = tableRe[j];
+		t[1] = tableIm[j];
+		return i + s;
+	    }
+	}
+	return 0;
+    }
+
     // ========================================================
     // Tester function.
     // ========================================================
@@ -196,5 +802,20 @@ class Newton {
 	System.out.println("Error code: " +n.getError());
 	System.out.println("Iterations: " +n.getNumIterations());
         System.out.println("Found root: " +n.getRoot());
+
+	// z^3 - 2z + 2 has an attracting 2-cycle {0, 1}.
+	Polynomial q = new Polynomial(new Complex[] { new Complex(2.0), new Complex(-2.0),
+						      new Complex(0.0), new Complex(1.0) });
+	Newton c = new Newton(q);
+	c.iterate(new Complex(0.01, 0.0));
+	System.out.println("Cycle test: error " +c.getError()+ ", period " +c.getPeriod());
+
+	// The reentrant API with a larger iteration budget and tolerance.
+	Newton m = new Newton(p, HALLEY, 50, 1.0e-12);
+	System.out.println("Halley:     " +m.solve(new Complex(1.0, 1.0)));
+
+	// The same starting point in double-double arithmetic.
+	n.iterate(new DDComplex(1.0, 1.0));
+	System.out.println("DD root:    " +n.getRoot()+ " after " +n.getNumIterations()+ " iterations");
     }
 }
\ No newline at end of file
@@ -0,0 +1,286 @@
+/*
+ * PROJECT II: NewtonBatch.java
+ *
+ * This class applies Newton-Raphson to many starting points at once. The
+ * starting points are given as packed arrays of real and imaginary parts
+ * (struct-of-arrays), and the results are written to packed arrays of root
+ * indices, iteration counts and error codes.
+ *
+ * Internally the points are processed LANES at a time: every lane holds the
+ * current iterate of one point, and the polynomial and its derivative are
+ * evaluated for all lanes together with branch-free inner loops over the
+ * lane arrays, which HotSpot's superword optimisation turns into SIMD code.
+ * Lanes whose point has converged (or failed) are retired and immediately
+ * refilled with the next starting point, so that lanes never idle while
+ * others are still iterating.
+ *
+ * Every step is a Newton-Raphson step with P and P' evaluated by Horner's
+ * rule. Newton.iterate(double, double) with the NEWTON method does the same
+ * for degree below CompiledPolynomial.ESTRIN, and then the results agree
+ * exactly, with three exceptions:
+ *
+ *   - From that degree on Newton.iterate() evaluates by Estrin's scheme,
+ *     which rounds differently, so a point near a basin boundary may
+ *     occasionally converge elsewhere or take a different number of steps.
+ *   - If Newton.setRootTable() has been called, Newton.iterate() stops as
+ *     soon as convergence is certain and estimates the remaining steps; the
+ *     batch always iterates to the tolerance, so the root is the same but
+ *     the iteration count may differ.
+ *   - Attracting cycles are not detected: points which Newton.iterate()
+ *     reports as cycling (error -3) are reported here as not converging
+ *     (error -2).
+ */
+
+class NewtonBatch {
+    /**
+     * Number of points iterated together.
+     */
+    public static final int LANES = 16;
+
+    /**
+     * Unboxed co-efficients of the polynomial.
+     */
+    private double[] aRe, aIm;
+
+    /**
+     * The table of known roots, used to turn converged iterates into root
+     * indices.
+     */
+    private double[] rootRe, rootIm;
+
+    // ========================================================
+    // Constructor functions.
+    // ========================================================
+
+    /**
+     * Constructor: sets up a batch solver for p, matching converged iterates
+     * against the given root table.
+     *
+     * @param p      The polynomial used for Newton-Raphson.
+     * @param roots  The roots of p; an iterate is assigned the index of the
+     *               first root within Newton.TOL of it.
+     */
+    public NewtonBatch(Polynomial p, Complex[] roots) {
+	aRe    = p.realCoeffs();
+	aIm    = p.imagCoeffs();
+	rootRe = new double[roots.length];
+	rootIm = new double[roots.length];
+	for (int r = 0; r < roots.length; r++) {
+	    rootRe[r] = roots[r].getReal();
+	    rootIm[r] = roots[r].getImag();
+	}
+    }
+
+    /**
+     * Constructor: sets up a batch solver for p, computing its root table
+     * with Polynomial.roots().
+     *
+     * @param p  The polynomial used for Newton-Raphson.
+     */
+    public NewtonBatch(Polynomial p) {
+	this(p, p.roots());
+    }
+
+    // ========================================================
+    // Batch Newton-Raphson.
+    // ========================================================
+
+    /**
+     * Applies Newton-Raphson to the starting points held in a packed array;
+     * see iterate(double[], double[], int[], int[], int[]).
+     *
+     * @param z              The starting points.
+     * @param rootIndex      Receives the root index of each point.
+     * @param numIterations  Receives the iteration count of each point.
+     * @param err            Receives the error code of each point.
+     */
+    public void iterate(ComplexArray z, int[] rootIndex, int[] numIterations, int[] err) {
+	iterate(z.real(), z.imag(), rootIndex, numIterations, err);
+    }
+
+    /**
+     * Applies Newton-Raphson to the starting points re[k] + i*im[k] for
+     * 0 <= k < re.length. For each point the results are:
+     *
+     *   - rootIndex[k]: index of the root in the root table, or -1 if the
+     *     iteration failed or converged to a point not in the table.
+     *   - numIterations[k]: number of iterations used (as for Newton).
+     *   - err[k]: the error code, as for Newton.getError().
+     *
+     * @param re             Real parts of the starting points.
+     * @param im             Imaginary parts of the starting points.
+     * @param rootIndex      Receives the root index of each point.
+     * @param numIterations  Receives the iteration count of each point.
+     * @param err            Receives the error code of each point.
+     */
+    public void iterate(double[] re, double[] im, int[] rootIndex,
+			int[] numIterations, int[] err) {
+	int n = re.length;
+	if (im.length != n || rootIndex.length < n || numIterations.length < n
+	    || err.length < n) {
+	    throw new RuntimeException("Batch arrays must all have the same length!");
+	}
+
+	int deg = aRe.length - 1;
+	double[] zr = new double[LANES], zi = new double[LANES];
+	double[] fr = new double[LANES], fi = new double[LANES];
+	double[] pr = new double[LANES], pi = new double[LANES];
+	int[] point = new int[LANES], iter = new int[LANES];
+
+	// Fill the lanes with the first points; lanes without a point are
+	// marked by point = -1 and iterate harmlessly on zero.
+	int next = 0, active = 0;
+	for (int l = 0; l < LANES; l++) {
+	    point[l] = -1;
+	    if (next < n) {
+		load(l, next++, re, im, zr, zi, point, iter);
+		active++;
+	    }
+	}
+
+	while (active > 0) {
+	    // f(z) and f'(z) for every lane, as in Polynomial.taylor().
+	    for (int l = 0; l < LANES; l++) {
+		fr[l] = aRe[deg];
+		fi[l] = aIm[deg];
+		pr[l] = 0.0;
+		pi[l] = 0.0;
+	    }
+	    for (int k = deg - 1; k >= 0; k--) {
+		double cr = aRe[k], ci = aIm[k];
+		for (int l = 0; l < LANES; l++) {
+		    double x = zr[l], y = zi[l];
+		    double t = x*pr[l] - y*pi[l] + fr[l];
+		    pi[l] = x*pi[l] + y*pr[l] + fi[l];
+		    pr[l] = t;
+		    t     = x*fr[l] - y*fi[l] + cr;
+		    fi[l] = x*fi[l] + y*fr[l] + ci;
+		    fr[l] = t;
+		}
+	    }
+
+	    // Newton step, convergence test and lane retirement.
+	    for (int l = 0; l < LANES; l++) {
+		int k = point[l];
+		if (k < 0) {
+		    continue;
+		}
+		int i = ++iter[l];
+		int code = 1;
+
+		double mod2 = pr[l]*pr[l] + pi[l]*pi[l];
+		if (mod2 == 0) {
+		    code = -1;
+		} else {
+		    double inv = 1/mod2;
+		    double wr  = zr[l] - (fr[l]*pr[l] + fi[l]*pi[l])*inv;
+		    double wi  = zi[l] - (fi[l]*pr[l] - fr[l]*pi[l])*inv;
+		    double er  = wr - zr[l], ei = wi - zi[l];
+		    zr[l] = wr;
+		    zi[l] = wi;
+		    if (Math.sqrt(er*er + ei*ei) < Newton.TOL) {
+			code = 0;
+		    } else if (i >= Newton.MAXITER - 1) {
+			code = -2;
+		    }
+		}
+		if (code == 1) {
+		    continue;
+		}
+
+		// Retire the lane and refill it with the next point.
+		err[k]       = code;
+		rootIndex[k] = code == 0 ? findRoot(zr[l], zi[l]) : -1;
+		if (code == 0) {
+		    numIterations[k] = i;
+		}
+		point[l] = -1;
+		active--;
+		if (next < n) {
+		    load(l, next++, re, im, zr, zi, point, iter);
+		    active++;
+		}
+	    }
+	}
+    }
+
+    /**
+     * Loads starting point k into lane l.
+     */
+    private static void load(int l, int k, double[] re, double[] im,
+			     double[] zr, double[] zi, int[] point, int[] iter) {
+	zr[l]    = re[k];
+	zi[l]    = im[k];
+	point[l] = k;
+	iter[l]  = 0;
+    }
+
+    /**
+     * Returns the index of the first root in the table within Newton.TOL of
+     * the point re + i*im, or -1 if there is none.
+     */
+    private int findRoot(double re, double im) {
+	for (int r = 0; r < rootRe.length; r++) {
+	    double dr = re - rootRe[r], di = im - rootIm[r];
+	    if (Math.sqrt(dr*dr + di*di) < Newton.TOL) {
+		return r;
+	    }
+	}
+	return -1;
+    }
+
+    // ========================================================
+    // Tester function.
+    // ========================================================
+
+    public static void main(String[] args) {
+	// Compare against the per-point path on the NewtonFractal example.
+	Complex[] coeff = new Complex[] { new Complex(1.0,0.0), new Complex(3.0,0.0),
+					  new Complex(-5.0,-2.0), new Complex(0.0,-3.0),
+					  new Complex(0.0,0.0), new Complex(1.0,0.0) };
+	Polynomial  p     = new Polynomial(coeff);
+	NewtonBatch batch = new NewtonBatch(p);
+	Newton      n     = new Newton(p);
+
+	int grid = 400, m = grid*grid;
+	double[] re = new double[m], im = new double[m];
+	for (int i = 0; i < grid; i++) {
+	    for (int j = 0; j < grid; j++) {
+		re[i*grid + j] = -4.0 + i*8.0/grid;
+		im[i*grid + j] =  4.0 - j*8.0/grid;
+	    }
+	}
+	int[] idx = new int[m], iters = new int[m], err = new int[m];
+
+	// Warm up both paths so that the timings compare compiled code.
+	for (int r = 0; r < 5; r++) {
+	    batch.iterate(re, im, idx, iters, err);
+	    for (int k = 0; k < m; k++) {
+		n.iterate(re[k], im[k]);
+	    }
+	}
+
+	ComplexArray z = new ComplexArray(re, im);
+	long start = System.nanoTime();
+	batch.iterate(z, idx, iters, err);
+	double batchMs = (System.nanoTime() - start) / 1.0e6;
+
+	int mismatches = 0;
+	start = System.nanoTime();
+	for (int k = 0; k < m; k++) {
+	    int e = n.iterate(re[k], im[k]);
+	    if (e == -3) {
+		e = -2;
+	    }
+	    if (e != err[k] || (e == 0 && n.getNumIterations() != iters[k])) {
+		mismatches++;
+	    }
+	}
+	double scalarMs = (System.nanoTime() - start) / 1.0e6;
+
+	System.out.println("Points:      " +m);
+	System.out.println("Mismatches:  " +mismatches);
+	System.out.println("Batch time:  " +batchMs+ " ms");
+	System.out.println("Scalar time: " +scalarMs+ " ms");
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * PROJECT II: NewtonBenchmark.java
+ *
+ * A small benchmark comparing the iteration methods offered by Newton
+ * (Newton-Raphson, Halley, Schroeder and damped Newton). For each test
+ * polynomial it runs every method from a grid of starting points covering
+ * the same square as the NewtonFractal example, and reports the fraction
+ * of points that converged, the average number of iterations per converged
+ * point and the total time taken. It also compares plain Newton-Raphson
+ * against Newton-Raphson with early termination at certified roots (see
+ * Newton.setRootTable()).
+ *
+ * Run with: java NewtonBenchmark
+ */
+
+class NewtonBenchmark {
+    /**
+     * Number of grid points along each side of the square.
+     */
+    public static final int GRID = 400;
+
+    /**
+     * Number of timed repetitions of each run (after one warm-up run).
+     */
+    public static final int REPEATS = 5;
+
+    /**
+     * Names of the methods, indexed by the Newton method constants.
+     */
+    private static final String[] NAMES = { "Newton", "Halley", "Schroeder", "Damped" };
+
+    /**
+     * Runs one method over the grid of starting points in the square with
+     * top-left corner (-4, 4) and width 8.
+     *
+     * @param n       The Newton object to benchmark.
+     * @param counts  Receives the number of converged points and the total
+     *                number of iterations for those points.
+     */
+    private static void run(Newton n, long[] counts) {
+	double dz = 8.0 / GRID;
+	counts[0] = counts[1] = 0;
+	for (int i = 0; i < GRID; i++) {
+	    for (int j = 0; j < GRID; j++) {
+		if (n.iterate(-4.0 + i*dz, 4.0 - j*dz) == 0) {
+		    counts[0]++;
+		    counts[1] += n.getNumIterations();
+		}
+	    }
+	}
+    }
+
+    /**
+     * Benchmarks all methods on the polynomial p.
+     *
+     * @param name  A description of the polynomial.
+     * @param p     The polynomial.
+     * @param m     The multiplicity used as the relaxation factor for the
+     *              damped method.
+     */
+    private static void compare(String name, Polynomial p, double m) {
+	System.out.println(name+ ": " +p);
+	long[] counts = new long[2];
+	for (int method = Newton.NEWTON; method <= Newton.DAMPED; method++) {
+	    Newton n = new Newton(p, method);
+	    n.setRelaxation(m);
+	    run(n, counts);
+
+	    long start = System.nanoTime();
+	    for (int r = 0; r < REPEATS; r++) {
+		run(n, counts);
+	    }
+	    double ms = (System.nanoTime() - start) / (1.0e6 * REPEATS);
+
+	    System.out.println(String.format("  %-10s converged %6.2f%%  avg iter %6.3f  %8.2f ms",
+					     NAMES[method], 100.0*counts[0]/(GRID*GRID),
+					     counts[0] == 0 ? 0.0 : (double)counts[1]/counts[0], ms));
+	}
+    }
+
+    /**
+     * Compares plain Newton-Raphson on p with early termination using the
+     * roots of p, reporting the time taken by each, the number of starting
+     * points whose root differs and the number whose iteration count
+     * differs.
+     *
+     * @param name  A description of the polynomial.
+     * @param p     The polynomial.
+     */
+    private static void certify(String name, Polynomial p) {
+	Complex[] roots = p.roots();
+	Newton plain = new Newton(p), early = new Newton(p);
+	early.setRootTable(roots);
+
+	double dz = 8.0 / GRID;
+	long[] counts = new long[2];
+	run(plain, counts);
+	run(early, counts);
+	long t0 = System.nanoTime();
+	for (int r = 0; r < REPEATS; r++) {
+	    run(plain, counts);
+	}
+	long t1 = System.nanoTime();
+	for (int r = 0; r < REPEATS; r++) {
+	    run(early, counts);
+	}
+	long t2 = System.nanoTime();
+
+	int rootDiff = 0, iterDiff = 0;
+	for (int i = 0; i < GRID; i++) {
+	    for (int j = 0; j < GRID; j++) {
+		int a = plain.iterate(-4.0 + i*dz, 4.0 - j*dz);
+		int b = early.iterate(-4.0 + i*dz, 4.0 - j*dz);
+		if (a != b || (a == 0 && Math.hypot(plain.getRootReal() - early.getRootReal(),
+						    plain.getRootImag() - early.getRootImag()) > 1.0e-8)) {
+		    rootDiff++;
+		} else if (a == 0 && plain.getNumIterations() != early.getNumIterations()) {
+		    iterDiff++;
+		}
+	    }
+	}
+	System.out.println(String.format("%s: plain %.2f ms, certified %.2f ms, %d roots and %d "
+					 + "iteration counts differ", name, (t1 - t0)/(1.0e6*REPEATS),
+					 (t2 - t1)/(1.0e6*REPEATS), rootDiff, iterDiff));
+    }
+
+    public static void main(String[] args) {
+	// The polynomial of the NewtonFractal example.
+	compare("Example", new Polynomial(new Complex[] {
+		    new Complex(1.0,0.0), new Complex(3.0,0.0), new Complex(-5.0,-2.0),
+		    new Complex(0.0,-3.0), new Complex(0.0,0.0), new Complex(1.0,0.0) }), 1.0);
+
+	// z^3 - 1, which has three simple roots.
+	compare("Simple roots", new Polynomial(new Complex[] {
+		    new Complex(-1.0), new Complex(), new Complex(), new Complex(1.0) }), 1.0);
+
+	// (z-1)^3 (z+1) = z^4 - 2z^3 + 2z - 1, with a triple root at z = 1.
+	compare("Triple root", new Polynomial(new Complex[] {
+		    new Complex(-1.0), new Complex(2.0), new Complex(), new Complex(-2.0),
+		    new Complex(1.0) }), 3.0);
+
+	System.out.println();
+	certify("Example", new Polynomial(new Complex[] {
+		    new Complex(1.0,0.0), new Complex(3.0,0.0), new Complex(-5.0,-2.0),
+		    new Complex(0.0,-3.0), new Complex(0.0,0.0), new Complex(1.0,0.0) }));
+	certify("Simple roots", new Polynomial(new Complex[] {
+		    new Complex(-1.0), new Complex(), new Complex(), new Complex(1.0) }));
+    }
+}
@@ -32,6 +32,11 @@ import java.awt.image.*;
 import java.awt.*;
 import javax.imageio.ImageIO;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
 
 class NewtonFractal {
     /**
@@ -43,11 +48,24 @@ class NewtonFractal {
      * The top-left corner of the square in the complex plane to examine.
      */
     private Complex origin;
+
+    /**
+     * The top-left corner in double-double precision. For fractals set up
+     * with an ordinary Complex origin this is just that origin.
+     */
+    private DDComplex ddOrigin;
     
     /**
      * The width of the square in the complex plane to examine.
      */
     private double width;
+
+    /**
+     * The size of the image in pixels (NUMPIXELS by NUMPIXELS unless given
+     * to the constructor). Pixels are square, so the region imaged is width
+     * wide and width*pixelsHigh/pixelsWide high.
+     */
+    private int pixelsWide, pixelsHigh;
     
     /**
      * A list of roots of the polynomial.
@@ -59,6 +77,12 @@ class NewtonFractal {
      */
     private Color[][] colors;
 
+    /**
+     * The colour of points whose iterates fall into an attracting cycle
+     * instead of converging to a root.
+     */
+    private static final Color CYCLECOLOR = Color.LIGHT_GRAY;
+
     /**
      * A flag indicating the type of plot to generate. If true, we choose
      * darker colors if a particular root takes longer to converge.
@@ -73,18 +97,121 @@ class NewtonFractal {
     private BufferedImage fractal;
     
     /**
-     * This object is another standard Java object which allows us to perform
-     * basic graphical operations (drawing lines, rectangles, pixels, etc) on
-     * the BufferedImage. This will be set up by setupFractal -- you do not
-     * need to worry about it!
+     * Packed RGB values of the colours, indexed by root*Newton.MAXITER +
+     * (numIter-1), so that colouring a pixel is a single array lookup. This
+     * is set up by setupFractal from the colors array.
+     */
+    private int[] palette;
+
+    /**
+     * The pixels of the fractal image, indexed by j*pixelsWide + i. This is
+     * the array behind the BufferedImage, so writing to it colours the image
+     * directly.
      */
-    private Graphics2D g2;
+    private int[] raster;
 
     /**
-     * Defines the width (in pixels) of the BufferedImage and hence the
-     * resulting image.
+     * Defines the default width (in pixels) of the BufferedImage and hence
+     * the resulting image.
      */
     public static final int NUMPIXELS = 400;
+
+    /**
+     * Relative pixel spacing below which createFractal() switches to the
+     * double-double Newton-Raphson path. A spacing of 1e-13 relative to the
+     * size of the co-ordinates is only a few hundred units in the last place
+     * of a double, so that below it neighbouring pixels would begin to merge
+     * (and round-off in the iteration to blur the basin boundaries).
+     */
+    public static final double DDSPACING = 1.0e-13;
+
+    /**
+     * Side length (in pixels) of the tiles which createFractal() hands to
+     * the worker threads. Tiles are split in half until they are at most
+     * this size, so that idle workers can steal the halves of expensive
+     * regions.
+     */
+    public static final int TILE = 16;
+
+    /**
+     * The number of worker threads used by createFractal(); 1 renders on
+     * the calling thread.
+     */
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The pool of worker threads, created on first use and replaced when
+     * the parallelism changes. Its threads are daemons and end by themselves
+     * when idle, so it is never shut down otherwise.
+     */
+    private volatile ForkJoinPool pool;
+
+    /**
+     * If true, tiles are rendered by Mariani-Silver subdivision: only the
+     * border of a rectangle is iterated, and if every border pixel has the
+     * same outcome the interior is filled without iterating it. See Tile.
+     */
+    private boolean subdivide = false;
+
+    /**
+     * The number of pixels actually iterated by the last render, which is
+     * less than the number of pixels when subdividing.
+     */
+    private final LongAdder iterated = new LongAdder();
+
+    /**
+     * The spacing of the lattice of pixels computed by the first pass of
+     * createProgressive().
+     */
+    public static final int COARSEST = 16;
+
+    /**
+     * Set by cancel() to stop a progressive render; the workers check it
+     * before each tile. It is cleared when the render ends, so that a
+     * cancel() issued before the render starts is not lost.
+     */
+    private volatile boolean cancelled;
+
+    /**
+     * The number of samples per side taken in each pixel on a basin
+     * boundary (1 for no anti-aliasing), and the seed of their jitter.
+     */
+    private int antialias = 1;
+    private long jitterSeed;
+
+    /**
+     * The anti-aliased pixels of the last render, as indices j*pixelsWide +
+     * i in increasing order, the basin map entries of their samples, and
+     * the number of samples per side they were taken with (which
+     * setAntialias() may since have changed). recolor() paints each of these
+     * pixels with the average colour of its samples.
+     */
+    private int[] edges;
+    private short[] edgeSamples;
+    private int edgeSide;
+
+    /**
+     * Per-pixel results of the band of rows being rendered, indexed by
+     * (j-j0)*pixelsWide + i for a band starting at row j0: the provisional
+     * root index from the RootRegistry (or -1), and the iteration count (or,
+     * if negative, the error code). They are only needed until the basin
+     * map has been built.
+     */
+    private int[] pixelRoot, pixelStatus;
+
+    /**
+     * The basin map of the last render, indexed by j*pixelsWide + i. Each
+     * entry packs the outcome at one pixel into a short: (root+1) << 8 |
+     * numIter if Newton-Raphson converged, BASIN_CYCLE if it fell into a
+     * cycle, and BASIN_NONE otherwise. recolor() repaints the image from it
+     * without iterating again.
+     */
+    private short[] basin;
+
+    /**
+     * Basin map entries for pixels which did not converge to a root.
+     */
+    private static final short BASIN_NONE = 0, BASIN_CYCLE = -1;
     
     // ========================================================
     // Constructor function.
@@ -100,12 +227,57 @@ class NewtonFractal {
      * @param width   The width of the square to image.
      */
     public NewtonFractal(Polynomial p, Complex origin, double width) {
+	this(p, origin, width, NUMPIXELS, NUMPIXELS);
+    }
+
+    /**
+     * Constructor function for an image of any size and aspect ratio.
+     *
+     * @param p           The polynomial to generate the fractal of.
+     * @param origin      The top-left corner of the rectangle to image.
+     * @param width       The width of the rectangle to image.
+     * @param pixelsWide  The width of the image in pixels.
+     * @param pixelsHigh  The height of the image in pixels.
+     */
+    public NewtonFractal(Polynomial p, Complex origin, double width, int pixelsWide, int pixelsHigh) {
+	if (pixelsWide < 1 || pixelsHigh < 1) {
+	    throw new RuntimeException("Image must be at least one pixel in size!");
+	}
         this.origin = origin;
         this.width = width;
+	this.pixelsWide = pixelsWide;
+	this.pixelsHigh = pixelsHigh;
+	this.ddOrigin = new DDComplex(origin);
 	this.iterator = new Newton(p);
 	roots = new ArrayList<Complex>();
 	setupFractal();
     }
+
+    /**
+     * Constructor function for deep zooms, where the origin must be given to
+     * more than double precision.
+     *
+     * @param p       The polynomial to generate the fractal of.
+     * @param origin  The top-left corner of the square to image.
+     * @param width   The width of the square to image.
+     */
+    public NewtonFractal(Polynomial p, DDComplex origin, double width) {
+	this(p, origin, width, NUMPIXELS, NUMPIXELS);
+    }
+
+    /**
+     * Constructor function for deep zooms with an image of any size.
+     *
+     * @param p           The polynomial to generate the fractal of.
+     * @param origin      The top-left corner of the rectangle to image.
+     * @param width       The width of the rectangle to image.
+     * @param pixelsWide  The width of the image in pixels.
+     * @param pixelsHigh  The height of the image in pixels.
+     */
+    public NewtonFractal(Polynomial p, DDComplex origin, double width, int pixelsWide, int pixelsHigh) {
+	this(p, origin.toComplex(), width, pixelsWide, pixelsHigh);
+	this.ddOrigin = origin;
+    }
     
     // ========================================================
     // Basic operations.
@@ -138,6 +310,120 @@ class NewtonFractal {
 	return -1;
     }
     
+    /**
+     * Replaces the roots ArrayList with all of the roots of the polynomial,
+     * computed up front by Polynomial.roots(). Calling this before
+     * createFractal() fixes the root table (and hence the colours) before
+     * the pixel loop starts, rather than discovering roots pixel by pixel.
+     */
+    public void presetRoots() {
+	roots.clear();
+	for (Complex z : iterator.getF().roots()) {
+	    if (findRoot(z) == -1) {
+		roots.add(z);
+	    }
+	}
+    }
+
+    /**
+     * Presets the roots (see presetRoots()) and passes them to the iterator
+     * so that Newton-Raphson stops as soon as an iterate is certified to
+     * converge to one of them; see Newton.setRootTable(). This saves most of
+     * the final iterations at every pixel without changing which root each
+     * pixel converges to.
+     */
+    public void certifyRoots() {
+	presetRoots();
+	iterator.setRootTable(roots.toArray(new Complex[roots.size()]));
+    }
+
+    /**
+     * Selects the iteration method used to generate the fractal.
+     *
+     * @param method  One of Newton.NEWTON, Newton.HALLEY, Newton.SCHROEDER or
+     *                Newton.DAMPED.
+     */
+    public void setMethod(int method) {
+	iterator.setMethod(method);
+    }
+
+    /**
+     * Sets the number of worker threads used by createFractal().
+     *
+     * @param parallelism  The number of threads; 1 renders on the calling
+     *                     thread.
+     */
+    public void setParallelism(int parallelism) {
+	if (parallelism < 1) {
+	    throw new RuntimeException("Parallelism must be at least 1!");
+	}
+	synchronized (this) {
+	    if (pool != null && parallelism != this.parallelism) {
+		pool.shutdown();
+		pool = null;
+	    }
+	    this.parallelism = parallelism;
+	}
+    }
+
+    /**
+     * Shuts down the worker threads, for callers that render once and
+     * discard the fractal. A later render starts a new pool.
+     */
+    public synchronized void close() {
+	if (pool != null) {
+	    pool.shutdown();
+	    pool = null;
+	}
+    }
+
+    /**
+     * Switches Mariani-Silver subdivision on or off. Most of a Newton fractal
+     * consists of large regions in which every pixel converges to the same
+     * root in the same number of iterations; with subdivision on, such a
+     * region is filled from its border instead of being iterated pixel by
+     * pixel. This is a heuristic: a feature lying entirely inside a
+     * rectangle whose border is uniform (such as a small island of another
+     * basin) is lost, so images may differ slightly from the exact render.
+     *
+     * @param subdivide  True to render by subdivision.
+     */
+    public void setSubdivision(boolean subdivide) {
+	this.subdivide = subdivide;
+    }
+
+    /**
+     * Switches on adaptive anti-aliasing for createFractal() and
+     * createProgressive(). After the basin map is built, every pixel which
+     * disagrees with a neighbour about which root it converges to is
+     * sampled again at samples x samples points, one placed at random in
+     * each cell of a grid over the pixel, and painted with the average
+     * colour of those samples. Only pixels on basin boundaries pay for the
+     * extra samples, which costs a small fraction of supersampling every
+     * pixel. The jitter is drawn from a generator seeded by seed and the
+     * pixel, so images are reproducible. streamFractal() does not
+     * anti-alias.
+     *
+     * @param samples  The number of samples per side; 1 switches
+     *                 anti-aliasing off.
+     * @param seed     The seed of the jitter.
+     */
+    public void setAntialias(int samples, long seed) {
+	if (samples < 1 || samples > 16) {
+	    throw new RuntimeException("Samples per side must be between 1 and 16!");
+	}
+	this.antialias  = samples;
+	this.jitterSeed = seed;
+    }
+
+    /**
+     * Returns the number of pixels which Newton-Raphson was applied to by the
+     * last createFractal() or streamFractal().
+     */
+    public long getPixelsIterated() {
+	return iterated.sum();
+    }
+
     /**
      * Convert from pixel indices (i,j) to the complex number (origin.real +
      * i*dz, origin.imag - j*dz).
@@ -146,12 +432,39 @@ class NewtonFractal {
      * @param j  y-axis co-ordinate of the pixel located at (i,j)
      */
     public Complex pixelToComplex(int i, int j) {
-        double dz = width / NUMPIXELS;
+	double dz = width / pixelsWide;
         double re = origin.getReal() + i*1.0*dz;
         double im = origin.getImag() - j*1.0*dz;
 	return new Complex(re, im);
     }
     
+    /**
+     * Double-double version of pixelToComplex(), used for deep zooms. The
+     * offsets i*dz and j*dz are formed exactly with Math.fma before being
+     * added to the origin.
+     *
+     * @param i  x-axis co-ordinate of the pixel located at (i,j)
+     * @param j  y-axis co-ordinate of the pixel located at (i,j)
+     */
+    public DDComplex pixelToDDComplex(int i, int j) {
+	double dz = width / pixelsWide;
+	double x  = i*dz, y = -j*dz;
+	return ddOrigin.add(new DDComplex(x, Math.fma(i, dz, -x), y, Math.fma(-j, dz, -y)));
+    }
+
+    /**
+     * Decides whether the pixels are too closely spaced for double precision,
+     * i.e. whether the spacing relative to the size of the co-ordinates (or
+     * to 1, the scale of the iteration near the roots) is below DDSPACING.
+     *
+     * @return True if createFractal() should use double-double arithmetic.
+     */
+    public boolean needsDoubleDouble() {
+	double height = width*pixelsHigh/pixelsWide;
+	double scale  = Math.max(1.0, origin.abs() + Math.max(width, height));
+	return width / pixelsWide < DDSPACING * scale;
+    }
+
     // ========================================================
     // Fractal generating function.
     // ========================================================
@@ -159,26 +472,681 @@ class NewtonFractal {
     /**
      * Generate the fractal image. See the colorIterations instance variable
      * for a better description of its purpose.
+     *
+     * The pixels are computed in parallel tiles (see Tile), using the
+     * reentrant Newton.solve() so that the workers share no mutable state
+     * other than a RootRegistry. The image is then painted in a single pass
+     * in scan order, which also renumbers the roots in the order a serial
+     * scan would have found them, so the colours never depend on the
+     * scheduling of the threads.
      */
     public void createFractal(boolean colorIterations) {
+	allocateImage();
+	boolean dd = needsDoubleDouble();
+	RootRegistry registry = new RootRegistry(Newton.TOL);
+	basin = new short[pixelsWide*pixelsHigh];
+	iterated.reset();
+	render(0, pixelsHigh, dd, registry);
+	classify(0, pixelsHigh, dd, registry, new int[0], true, basin);
+	pixelRoot = pixelStatus = null;
+	supersample(dd);
+	recolor(colorIterations);
+    }
+
+    /**
+     * Generates the fractal image progressively, for interactive use: the
+     * pixels are computed on a lattice of spacing COARSEST first, then on
+     * lattices of half the spacing in turn, each pass computing only the
+     * pixels that no earlier pass has. After each pass the image is painted
+     * with every computed pixel filling the block below and to the right of
+     * it, and the listener is told. The finished image and basin map are
+     * exactly those of createFractal(); call presetRoots() first so that the
+     * previews are coloured the same way.
+     *
+     * The render can be stopped from another thread (or from the listener)
+     * with cancel(), which takes effect within a tile of pixels. Mariani-
+     * Silver subdivision (see setSubdivision()) is not used in this mode.
+     *
+     * @param colorIterations  The colour scheme; see the colorIterations
+     *                         instance variable.
+     * @param listener         Notified after each pass; may be null.
+     * @return                 True if the image was finished, false if the
+     *                         render was cancelled.
+     */
+    public boolean createProgressive(boolean colorIterations, RenderListener listener) {
+	allocateImage();
+	this.colorIterations = colorIterations;
+	boolean dd = needsDoubleDouble();
+	RootRegistry registry = new RootRegistry(Newton.TOL);
+	int n = pixelsWide*pixelsHigh;
+	// A status of 0 marks a pixel not computed yet; classify() leaves it
+	// black in the basin map.
+	pixelRoot   = new int[n];
+	pixelStatus = new int[n];
+	basin       = new short[n];
+	iterated.reset();
+	int preset = roots.size();
+	edges = null;
+	edgeSamples = null;
+	try {
+	    for (int step = COARSEST; step >= 1; step /= 2) {
+		invoke(new Tile(0, pixelsWide, 0, pixelsHigh, 0, dd, registry, step));
+		if (cancelled) {
+		    // Leave roots as they were, so that later renders number
+		    // them as a fresh one would.
+		    roots.subList(preset, roots.size()).clear();
+		    basin = null;
+		    return false;
+		}
+
+		// Roots found by the previews are dropped again, so that the
+		// final pass numbers them exactly as createFractal() would.
+		roots.subList(preset, roots.size()).clear();
+		classify(0, pixelsHigh, dd, registry, new int[0], true, basin);
+		if (step == 1) {
+		    supersample(dd);
+		    recolor(colorIterations);
+		} else {
+		    for (int j = 0; j < pixelsHigh; j += step) {
+			for (int i = 0; i < pixelsWide; i += step) {
+			    int c = color(basin[j*pixelsWide + i]);
+			    for (int jj = j; jj < Math.min(j + step, pixelsHigh); jj++) {
+				Arrays.fill(raster, jj*pixelsWide + i, jj*pixelsWide + Math.min(i + step, pixelsWide), c);
+			    }
+			}
+		    }
+		}
+		if (listener != null) {
+		    listener.passComplete(this, step);
+		}
+	    }
+	    return true;
+	} finally {
+	    pixelRoot = pixelStatus = null;
+	    cancelled = false;
+	}
+    }
+
+    /**
+     * Stops the progressive render in progress, or the next one if none is
+     * running; see createProgressive(). May be called from any thread.
+     */
+    public void cancel() {
+	cancelled = true;
+    }
+
+    /**
+     * Returns the fractal image, or null before the first render. The image
+     * is drawn over by later renders.
+     */
+    public BufferedImage getImage() {
+	return fractal;
+    }
+
+    /**
+     * Allocates the image the first time it is needed.
+     */
+    private void allocateImage() {
+	if ((long) pixelsWide * pixelsHigh > Integer.MAX_VALUE) {
+	    throw new RuntimeException("Image too large to hold in memory; use streamFractal!");
+	}
+	if (fractal == null) {
+	    fractal = new BufferedImage(pixelsWide, pixelsHigh, BufferedImage.TYPE_INT_RGB);
+	    raster  = ((DataBufferInt) fractal.getRaster().getDataBuffer()).getData();
+	}
+    }
+
+    /**
+     * Renders the fractal straight to a PNG file a band of rows at a time,
+     * so that only one band is ever held in memory; this allows images far
+     * larger than createFractal() can hold. The image is not kept, so
+     * recolor() and saveFractal() do not apply to it.
+     *
+     * Roots first found in this mode are numbered in row-by-row scan order,
+     * which does not depend on the band height; call presetRoots() first to
+     * give them the same colours as createFractal().
+     *
+     * @param fileName         The filename to save the image as.
+     * @param colorIterations  The colour scheme; see the colorIterations
+     *                         instance variable.
+     * @param bandHeight       The number of rows rendered at a time.
+     */
+    public void streamFractal(String fileName, boolean colorIterations, int bandHeight) {
+	// Checked before the file is opened, so that a bad band height
+	// leaves no empty file behind.
+	checkBandHeight(bandHeight);
+	try {
+	    streamFractal(new BufferedOutputStream(new FileOutputStream(fileName)), colorIterations, bandHeight);
+	} catch (IOException e) {
+	    System.out.println("I got an error trying to save! Maybe you're out of space?");
+	}
+    }
+
+    /**
+     * Renders the fractal as a PNG image to a stream, as streamFractal(String,
+     * boolean, int) does to a file, except that errors are passed on to the
+     * caller rather than reported.
+     *
+     * @param out              The stream to write to; it is closed when the
+     *                         image is finished (or has failed).
+     * @param colorIterations  The colour scheme; see the colorIterations
+     *                         instance variable.
+     * @param bandHeight       The number of rows rendered at a time.
+     * @throws IOException     If the image could not be written, in which
+     *                         case the output is incomplete.
+     */
+    public void streamFractal(OutputStream out, boolean colorIterations, int bandHeight) throws IOException {
+	try {
+	    checkBandHeight(bandHeight);
+	} catch (RuntimeException e) {
+	    out.close();
+	    throw e;
+	}
+	bandHeight = Math.min(bandHeight, pixelsHigh);
 	this.colorIterations = colorIterations;
-	// Iterate over rows and columns.
-	for (int i = 0; i < NUMPIXELS; i++) {
-	    for (int j = 0; j < NUMPIXELS; j++) {
-		iterator.iterate(pixelToComplex(i, j));
-		// Check if Newton-Raphson produces error.
-		if (iterator.getError() == 0) {
-		    Complex iterRoot = iterator.getRoot();
-		    int iterNum = iterator.getNumIterations();
+	boolean dd = needsDoubleDouble();
+	RootRegistry registry = new RootRegistry(Newton.TOL);
+	int[] canonical = new int[0];
+	short[] band = new short[pixelsWide*bandHeight];
+	int[] rgb = new int[pixelsWide*bandHeight];
+	iterated.reset();
+	try (PngWriter png = new PngWriter(out, pixelsWide, pixelsHigh)) {
+	    for (int j0 = 0; j0 < pixelsHigh; j0 += bandHeight) {
+		int j1 = Math.min(j0 + bandHeight, pixelsHigh);
+		render(j0, j1, dd, registry);
+		canonical = classify(j0, j1, dd, registry, canonical, false, band);
+		for (int k = 0; k < (j1 - j0)*pixelsWide; k++) {
+		    rgb[k] = color(band[k]);
+		}
+		png.writeRows(rgb, j1 - j0);
+	    }
+	} finally {
+	    pixelRoot = pixelStatus = null;
+	}
+    }
+
+    /**
+     * Checks that bands of bandHeight rows fit in an array.
+     */
+    private void checkBandHeight(int bandHeight) {
+	if (bandHeight < 1 || (long) pixelsWide * bandHeight > Integer.MAX_VALUE) {
+	    throw new RuntimeException("Invalid band height!");
+	}
+    }
+
+    /**
+     * Computes the rows [j0, j1) in parallel tiles, leaving the results in
+     * pixelRoot and pixelStatus.
+     */
+    private void render(int j0, int j1, boolean dd, RootRegistry registry) {
+	int n = (j1 - j0)*pixelsWide;
+	if (pixelRoot == null || pixelRoot.length < n) {
+	    pixelRoot   = new int[n];
+	    pixelStatus = new int[n];
+	}
+	Tile all = new Tile(0, pixelsWide, j0, j1, j0, dd, registry, 0);
+	if (subdivide) {
+	    // Each tile expects its border to have been computed already.
+	    all.border();
+	}
+	invoke(all);
+    }
+
+    /**
+     * Runs a task on the calling thread or on a pool of parallelism
+     * workers.
+     */
+    private void invoke(Task all) {
+	if (parallelism == 1) {
+	    all.compute();
+	} else {
+	    pool().invoke(all);
+	}
+    }
+
+    /**
+     * Returns the pool of worker threads, creating it if necessary.
+     */
+    private synchronized ForkJoinPool pool() {
+	if (pool == null) {
+	    pool = new ForkJoinPool(parallelism);
+	}
+	return pool;
+    }
+
+    /**
+     * Turns the results of render() for rows [j0, j1) into basin map entries,
+     * stored in out at (j-j0)*pixelsWide + i. The provisional root indices
+     * of the RootRegistry are mapped to indices in roots: the first pixel
+     * with a given provisional index is solved again to obtain exactly the
+     * root a serial loop would have stored, and matched against (or added
+     * to) roots. The pixels are visited column by column (the order of the
+     * original serial loop) if byColumns is true, and row by row otherwise.
+     *
+     * @param canonical  The mapping from provisional indices found so far,
+     *                   -1 where not yet known.
+     * @return           The mapping extended to all provisional indices.
+     */
+    private int[] classify(int j0, int j1, boolean dd, RootRegistry registry, int[] canonical,
+			   boolean byColumns, short[] out) {
+	int known = canonical.length;
+	canonical = Arrays.copyOf(canonical, registry.size());
+	Arrays.fill(canonical, known, canonical.length, -1);
+	int rows = j1 - j0;
+	int n = rows*pixelsWide;
+	for (int m = 0; m < n; m++) {
+	    int i = byColumns ? m / rows : m % pixelsWide;
+	    int j = byColumns ? j0 + m % rows : j0 + m / pixelsWide;
+	    int k = (j - j0)*pixelsWide + i;
+	    int status = pixelStatus[k];
+	    if (status > 0) {
+		int p = pixelRoot[k];
+		if (canonical[p] == -1) {
+		    Complex iterRoot = solve(i, j, dd).getRoot();
 		    if (findRoot(iterRoot) == -1) {
 			roots.add(iterRoot);
 		    }
-		    colorPixel(i, j, findRoot(iterRoot), iterNum);
+		    canonical[p] = findRoot(iterRoot);
+		}
+		out[k] = (short) ((canonical[p] + 1) << 8 | status);
+	    } else if (status == -3) {
+		out[k] = BASIN_CYCLE;
+	    } else {
+		out[k] = BASIN_NONE;
+	    }
+	}
+	return canonical;
+    }
+
+    /**
+     * Finds the pixels of the basin map on basin boundaries and samples them
+     * again for anti-aliasing (see setAntialias()), filling in edges and
+     * edgeSamples. The samples are computed in parallel; the roots they
+     * converge to are then matched against roots in pixel order, so that
+     * any new root is numbered the same way on every run.
+     */
+    private void supersample(boolean dd) {
+	edges = null;
+	edgeSamples = null;
+	if (antialias == 1) {
+	    return;
+	}
+
+	// A pixel is on a boundary if a neighbour converges to a different
+	// root, or fails differently.
+	int n = pixelsWide*pixelsHigh;
+	boolean[] edge = new boolean[n];
+	int m = 0;
+	for (int j = 0; j < pixelsHigh; j++) {
+	    for (int i = 0; i < pixelsWide; i++) {
+		int k = j*pixelsWide + i, b = basin[k] >> 8;
+		if (i + 1 < pixelsWide && basin[k + 1] >> 8 != b) {
+		    edge[k] = edge[k + 1] = true;
+		}
+		if (j + 1 < pixelsHigh && basin[k + pixelsWide] >> 8 != b) {
+		    edge[k] = edge[k + pixelsWide] = true;
+		}
+	    }
+	}
+	for (int k = 0; k < n; k++) {
+	    m += edge[k] ? 1 : 0;
+	}
+	int[] list = new int[m];
+	for (int k = 0, e = 0; k < n; k++) {
+	    if (edge[k]) {
+		list[e++] = k;
+	    }
+	}
+
+	int s2 = antialias*antialias;
+	int[] status = new int[m*s2];
+	double[] root = new double[2*m*s2];
+	invoke(new Supersample(list, 0, m, dd, status, root));
+
+	short[] samples = new short[m*s2];
+	for (int t = 0; t < m*s2; t++) {
+	    if (status[t] > 0) {
+		Complex z = new Complex(root[2*t], root[2*t+1]);
+		if (findRoot(z) == -1) {
+		    roots.add(z);
+		}
+		samples[t] = (short) ((findRoot(z) + 1) << 8 | status[t]);
+	    } else {
+		samples[t] = status[t] == -3 ? BASIN_CYCLE : BASIN_NONE;
+	    }
+	}
+	edges = list;
+	edgeSamples = samples;
+	edgeSide = antialias;
+    }
+
+    /**
+     * Repaints the image from the basin map of the last createFractal(),
+     * for example to switch between the two colour schemes, which takes
+     * milliseconds rather than a full render.
+     *
+     * @param colorIterations  The colour scheme; see the colorIterations
+     *                         instance variable.
+     */
+    public void recolor(boolean colorIterations) {
+	if (basin == null) {
+	    throw new RuntimeException("Call createFractal before recolor!");
+	}
+	this.colorIterations = colorIterations;
+	for (int k = 0; k < basin.length; k++) {
+	    raster[k] = color(basin[k]);
+	}
+	if (edges != null) {
+	    int s2 = edgeSide*edgeSide;
+	    for (int e = 0; e < edges.length; e++) {
+		int r = 0, g = 0, b = 0;
+		for (int t = e*s2; t < (e + 1)*s2; t++) {
+		    int c = color(edgeSamples[t]);
+		    r += c >> 16 & 0xff;
+		    g += c >> 8 & 0xff;
+		    b += c & 0xff;
+		}
+		raster[edges[e]] = (r + s2/2) / s2 << 16 | (g + s2/2) / s2 << 8 | (b + s2/2) / s2;
+	    }
+	}
+    }
+
+    /**
+     * Returns the packed RGB colour of a pixel with basin map entry b, in the
+     * current colour scheme.
+     */
+    private int color(short b) {
+	if (b > 0) {
+	    int k = colorIterations ? (b & 0xff) - 1 : 0;
+	    return palette[((b >> 8) - 1)*Newton.MAXITER + k];
+	} else if (b == BASIN_CYCLE) {
+	    // Points attracted to a cycle are not left black, so that they can
+	    // be told apart from points which just did not converge in time.
+	    return CYCLECOLOR.getRGB();
+	}
+	return Color.BLACK.getRGB();
+    }
+
+    /**
+     * Applies the iterator to the starting point of pixel (i,j), in double
+     * or double-double precision.
+     */
+    private NewtonResult solve(int i, int j, boolean dd) {
+	return dd ? iterator.solve(pixelToDDComplex(i, j)) : iterator.solve(pixelToComplex(i, j));
+    }
+
+    /**
+     * A fork-join task of the renderer. compute() is redeclared here so that
+     * invoke() can run a task directly on the calling thread.
+     */
+    private abstract class Task extends RecursiveAction {
+	private static final long serialVersionUID = 1L;
+
+	protected abstract void compute();
+
+	/**
+	 * Runs two subtasks: forked in our pool if this task is running in
+	 * it, otherwise one after the other on this thread. (invokeAll() on a
+	 * thread outside any pool would fork into the common pool, and with
+	 * parallelism 1 the render must stay on the calling thread.)
+	 */
+	protected void both(Task a, Task b) {
+	    ForkJoinPool current = getPool();
+	    if (current != null && current == pool) {
+		invokeAll(a, b);
+	    } else {
+		a.compute();
+		b.compute();
+	    }
+	}
+    }
+
+    /**
+     * A rectangle of pixels [i0, i1) x [j0, j1), rendered as a fork-join task
+     * into pixelRoot and pixelStatus, relative to the band starting at row
+     * base. Tiles larger than TILE split in half along their longer side,
+     * and the halves are forked, so that the pool's work stealing balances
+     * regions which are much slower to converge than others.
+     *
+     * When subdividing, a tile is only created once its border pixels have
+     * been computed. If they all converged to the same root in the same
+     * number of iterations (or all failed in the same way) the interior is
+     * filled with that outcome; otherwise the line along which the tile
+     * splits is computed, and the halves, which share that line, are
+     * rendered in the same way. Every pixel a tile reads was therefore
+     * written before the tile was forked, so no locking is needed.
+     *
+     * For createProgressive(), a tile with a step of s computes only the
+     * pixels on the lattice of spacing s, skipping those on the lattice of
+     * spacing 2s (which the previous pass computed) unless s is COARSEST.
+     */
+    private class Tile extends Task {
+	private static final long serialVersionUID = 1L;
+	private final int i0, i1, j0, j1, base, step;
+	private final boolean dd;
+	private final RootRegistry registry;
+	private final double[] root = new double[2], scratch = new double[Newton.SCRATCH];
+
+	Tile(int i0, int i1, int j0, int j1, int base, boolean dd, RootRegistry registry, int step) {
+	    this.i0 = i0;
+	    this.i1 = i1;
+	    this.j0 = j0;
+	    this.j1 = j1;
+	    this.base = base;
+	    this.dd = dd;
+	    this.registry = registry;
+	    this.step = step;
+	}
+
+	protected void compute() {
+	    if (subdivide && step == 0) {
+		subdivide();
+		return;
+	    }
+	    if (i1 - i0 > TILE || j1 - j0 > TILE) {
+		if (i1 - i0 >= j1 - j0) {
+		    int m = (i0 + i1) >>> 1;
+		    both(new Tile(i0, m, j0, j1, base, dd, registry, step),
+			 new Tile(m, i1, j0, j1, base, dd, registry, step));
+		} else {
+		    int m = (j0 + j1) >>> 1;
+		    both(new Tile(i0, i1, j0, m, base, dd, registry, step),
+			 new Tile(i0, i1, m, j1, base, dd, registry, step));
+		}
+		return;
+	    }
+
+	    if (step == 0) {
+		for (int i = i0; i < i1; i++) {
+		    for (int j = j0; j < j1; j++) {
+			pixel(i, j);
+		    }
+		}
+		iterated.add((long) (i1 - i0)*(j1 - j0));
+		return;
+	    }
+
+	    if (cancelled) {
+		return;
+	    }
+	    int count = 0;
+	    for (int i = (i0 + step - 1) / step * step; i < i1; i += step) {
+		for (int j = (j0 + step - 1) / step * step; j < j1; j += step) {
+		    if (step == COARSEST || i % (2*step) != 0 || j % (2*step) != 0) {
+			pixel(i, j);
+			count++;
+		    }
+		}
+	    }
+	    iterated.add(count);
+	}
+
+	/**
+	 * Renders the tile by Mariani-Silver subdivision, given that its
+	 * border has been computed.
+	 */
+	private void subdivide() {
+	    int w = i1 - i0, h = j1 - j0;
+	    if (w <= 2 || h <= 2) {
+		return;		// No interior.
+	    }
+	    if (uniform()) {
+		int k0 = (j0 - base)*pixelsWide + i0;
+		int status = pixelStatus[k0], p = pixelRoot[k0];
+		for (int j = j0 + 1; j < j1 - 1; j++) {
+		    int k = (j - base)*pixelsWide;
+		    Arrays.fill(pixelStatus, k + i0 + 1, k + i1 - 1, status);
+		    Arrays.fill(pixelRoot, k + i0 + 1, k + i1 - 1, p);
+		}
+		return;
+	    }
+
+	    Tile a, b;
+	    if (w >= h) {
+		int m = (i0 + i1) >>> 1;
+		for (int j = j0 + 1; j < j1 - 1; j++) {
+		    pixel(m, j);
+		}
+		iterated.add(h - 2);
+		a = new Tile(i0, m + 1, j0, j1, base, dd, registry, step);
+		b = new Tile(m, i1, j0, j1, base, dd, registry, step);
+	    } else {
+		int m = (j0 + j1) >>> 1;
+		for (int i = i0 + 1; i < i1 - 1; i++) {
+		    pixel(i, m);
+		}
+		iterated.add(w - 2);
+		a = new Tile(i0, i1, j0, m + 1, base, dd, registry, step);
+		b = new Tile(i0, i1, m, j1, base, dd, registry, step);
+	    }
+	    if (w > TILE || h > TILE) {
+		both(a, b);
+	    } else {
+		a.subdivide();
+		b.subdivide();
+	    }
+	}
+
+	/**
+	 * Computes the border pixels of the tile.
+	 */
+	void border() {
+	    for (int i = i0; i < i1; i++) {
+		pixel(i, j0);
+		if (j1 - 1 > j0) {
+		    pixel(i, j1 - 1);
+		}
+	    }
+	    for (int j = j0 + 1; j < j1 - 1; j++) {
+		pixel(i0, j);
+		if (i1 - 1 > i0) {
+		    pixel(i1 - 1, j);
+		}
+	    }
+	    iterated.add((long) (i1 - i0)*(j1 - j0) - (long) Math.max(i1 - i0 - 2, 0)*Math.max(j1 - j0 - 2, 0));
+	}
+
+	/**
+	 * Returns true if every border pixel of the tile has the same outcome.
+	 */
+	private boolean uniform() {
+	    int k0 = (j0 - base)*pixelsWide + i0;
+	    int status = pixelStatus[k0], p = pixelRoot[k0];
+	    for (int j = j0; j < j1; j += j1 - 1 - j0) {
+		int k = (j - base)*pixelsWide;
+		for (int i = i0; i < i1; i++) {
+		    if (pixelStatus[k + i] != status || pixelRoot[k + i] != p) {
+			return false;
+		    }
 		}
 	    }
+	    for (int j = j0 + 1; j < j1 - 1; j++) {
+		int k = (j - base)*pixelsWide;
+		if (pixelStatus[k + i0] != status || pixelRoot[k + i0] != p
+		    || pixelStatus[k + i1 - 1] != status || pixelRoot[k + i1 - 1] != p) {
+		    return false;
+		}
+	    }
+	    return true;
+	}
+
+	/**
+	 * Applies Newton-Raphson to pixel (i,j) and stores the outcome.
+	 */
+	private void pixel(int i, int j) {
+	    int k = (j - base)*pixelsWide + i;
+	    int status;
+	    if (dd) {
+		status = iterator.solve(pixelToDDComplex(i, j), root, scratch);
+	    } else {
+		Complex z = pixelToComplex(i, j);
+		status = iterator.solve(z.getReal(), z.getImag(), root, scratch);
+	    }
+	    pixelStatus[k] = status;
+	    pixelRoot[k]   = status > 0 ? registry.indexOf(root[0], root[1]) : -1;
 	}
     }
 
+    /**
+     * Computes the anti-aliasing samples of the pixels list[e0..e1) as a
+     * fork-join task, storing the outcome of sample t in status[t] and
+     * root[2t], root[2t+1]. The pixel (i,j) covers the square of side dz
+     * centred on pixelToComplex(i,j), and its samples are jittered within
+     * the cells of an antialias x antialias grid over that square.
+     */
+    private class Supersample extends Task {
+	private static final long serialVersionUID = 1L;
+	private final int[] list;
+	private final int e0, e1;
+	private final boolean dd;
+	private final int[] status;
+	private final double[] root;
+
+	Supersample(int[] list, int e0, int e1, boolean dd, int[] status, double[] root) {
+	    this.list = list;
+	    this.e0 = e0;
+	    this.e1 = e1;
+	    this.dd = dd;
+	    this.status = status;
+	    this.root = root;
+	}
+
+	protected void compute() {
+	    if (e1 - e0 > TILE) {
+		int m = (e0 + e1) >>> 1;
+		both(new Supersample(list, e0, m, dd, status, root),
+		     new Supersample(list, m, e1, dd, status, root));
+		return;
+	    }
+
+	    double dz = width / pixelsWide;
+	    double[] z = new double[2], scratch = new double[Newton.SCRATCH];
+	    int s2 = antialias*antialias;
+	    for (int e = e0; e < e1; e++) {
+		int k = list[e], i = k % pixelsWide, j = k / pixelsWide;
+		// Seeded by the pixel, so the jitter does not depend on which
+		// thread gets which pixels.
+		Random jitter = new Random(jitterSeed ^ k * 0x9E3779B97F4A7C15L);
+		for (int a = 0; a < antialias; a++) {
+		    for (int b = 0; b < antialias; b++) {
+			int t = e*s2 + a*antialias + b;
+			double x = (i - 0.5 + (a + jitter.nextDouble()) / antialias) * dz;
+			double y = (j - 0.5 + (b + jitter.nextDouble()) / antialias) * dz;
+			if (dd) {
+			    status[t] = iterator.solve(ddOrigin.add(new DDComplex(x, -y)), z, scratch);
+			} else {
+			    status[t] = iterator.solve(origin.getReal() + x, origin.getImag() - y, z, scratch);
+			}
+			root[2*t]   = z[0];
+			root[2*t+1] = z[1];
+		    }
+		}
+	    }
+	    iterated.add((long) (e1 - e0)*s2);
+	}
+    }
+
+
     // ========================================================
     // Tester function.
     // ========================================================
@@ -194,7 +1162,7 @@ class NewtonFractal {
         
         f.createFractal(false);
         f.saveFractal("fractal-light.png");
-        f.createFractal(true);
+	f.recolor(true);
         f.saveFractal("fractal-dark.png");
 	System.out.println(p);
 	f.printRoots();
@@ -243,29 +1211,15 @@ class NewtonFractal {
             }
         }
         
-        fractal = new BufferedImage(NUMPIXELS, NUMPIXELS, BufferedImage.TYPE_INT_RGB);
-        g2      = fractal.createGraphics();
+	palette = new int[5*Newton.MAXITER];
+	for (i = 0; i < 5; i++)
+	    for (j = 0; j < Newton.MAXITER; j++)
+		palette[i*Newton.MAXITER + j] = colors[i][j].getRGB();
+
+	// The image itself is allocated by createFractal, so that
+	// streamFractal never needs memory for the whole of it.
     }
     
-    /**
-     * Colors a pixel in the image.
-     *
-     * @param i          x-axis co-ordinate of the pixel located at (i,j)
-     * @param j          y-axis co-ordinate of the pixel located at (i,j)
-     * @param rootColor  An integer between 0 and 4 inclusive indicating the
-     *                   root number.
-     * @param numIter    Number of iterations at this root.
-     */
-    private void colorPixel(int i, int j, int rootColor, int numIter) 
-    {
-        // This function is complete!
-        if (colorIterations)
-            g2.setColor(colors[rootColor][numIter-1]);
-        else
-            g2.setColor(colors[rootColor][0]);
-        g2.fillRect(i,j,1,1);
-    }
-
     /**
      * Saves the fractal image to a file.
      *
@@ -273,6 +1227,8 @@ class NewtonFractal {
      */
     public void saveFractal(String fileName) {
         // This function is complete!
+	if (fractal == null)
+	    throw new RuntimeException("Call createFractal before saveFractal!");
         try {
             File outputfile = new File(fileName);
             ImageIO.write(fractal, "png", outputfile);
@@ -0,0 +1,132 @@
+/*
+ * PROJECT II: NewtonResult.java
+ *
+ * An immutable record of the outcome of one run of Newton-Raphson (or one of
+ * the other methods offered by Newton) from a single starting point. It is
+ * returned by Newton.solve(), which, unlike Newton.iterate(), does not store
+ * anything in the Newton object and so may be called from many threads at
+ * once.
+ */
+
+final class NewtonResult {
+    /**
+     * Real and imaginary parts of the root found. Only meaningful if err is
+     * zero.
+     */
+    private final double rootRe, rootIm;
+
+    /**
+     * The number of iterations required to reach within tolerance of the
+     * root. Only meaningful if err is zero.
+     */
+    private final int numIterations;
+
+    /**
+     * The error code, with the same meaning as Newton.getError().
+     */
+    private final int err;
+
+    /**
+     * The period of the attracting cycle found, if err is -3.
+     */
+    private final int period;
+
+    // ========================================================
+    // Constructor functions.
+    // ========================================================
+
+    /**
+     * Constructor: initialises all fields.
+     *
+     * @param rootRe         Real part of the root.
+     * @param rootIm         Imaginary part of the root.
+     * @param numIterations  Number of iterations used.
+     * @param err            The error code.
+     */
+    public NewtonResult(double rootRe, double rootIm, int numIterations, int err) {
+	this(rootRe, rootIm, numIterations, err, 0);
+    }
+
+    /**
+     * Constructor: initialises all fields, including the period of a
+     * detected cycle.
+     *
+     * @param rootRe         Real part of the root.
+     * @param rootIm         Imaginary part of the root.
+     * @param numIterations  Number of iterations used.
+     * @param err            The error code.
+     * @param period         The period of the cycle, if err is -3.
+     */
+    public NewtonResult(double rootRe, double rootIm, int numIterations, int err, int period) {
+	this.rootRe        = rootRe;
+	this.rootIm        = rootIm;
+	this.numIterations = numIterations;
+	this.err           = err;
+	this.period        = period;
+    }
+
+    // ========================================================
+    // Accessor methods.
+    // ========================================================
+
+    /**
+     * Returns the error code.
+     */
+    public int getError() {
+	return err;
+    }
+
+    /**
+     * Returns true if the iteration converged, i.e. the error code is zero.
+     */
+    public boolean converged() {
+	return err == 0;
+    }
+
+    /**
+     * Returns the period of the attracting cycle found, if getError() is -3.
+     */
+    public int getPeriod() {
+	return period;
+    }
+
+    /**
+     * Returns the number of iterations used.
+     */
+    public int getNumIterations() {
+	return numIterations;
+    }
+
+    /**
+     * Returns the root found as a new Complex.
+     */
+    public Complex getRoot() {
+	return new Complex(rootRe, rootIm);
+    }
+
+    /**
+     * Returns the real part of the root found.
+     */
+    public double getRootReal() {
+	return rootRe;
+    }
+
+    /**
+     * Returns the imaginary part of the root found.
+     */
+    public double getRootImag() {
+	return rootIm;
+    }
+
+    /**
+     * Returns a string describing the result.
+     */
+    public String toString() {
+	if (err == -3) {
+	    return "cycle of period " +period;
+	} else if (err != 0) {
+	    return "error " +err;
+	}
+	return new Complex(rootRe, rootIm)+ " after " +numIterations+ " iterations";
+    }
+}
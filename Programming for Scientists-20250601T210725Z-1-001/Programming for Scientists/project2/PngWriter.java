@@ -0,0 +1,188 @@
+/*
+ * PROJECT II: PngWriter.java
+ *
+ * A minimal streaming PNG encoder for 8-bit RGB images. Unlike ImageIO,
+ * which needs the whole image in memory, rows are passed to writeRows() a
+ * band at a time and compressed on the fly, so an image of any size can be
+ * written with memory for one band.
+ *
+ * The file is laid out as the PNG specification requires: the signature, an
+ * IHDR chunk, the zlib-compressed scanlines (each preceded by its filter
+ * type, here always 0) split into IDAT chunks, and an IEND chunk. Every
+ * chunk ends with the CRC-32 of its type and data.
+ */
+
+import java.io.*;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+class PngWriter implements Closeable {
+    /**
+     * The eight bytes which start every PNG file.
+     */
+    private static final byte[] SIGNATURE = { (byte) 137, 80, 78, 71, 13, 10, 26, 10 };
+
+    /**
+     * Size of the buffer of compressed data, and hence the largest IDAT
+     * chunk written.
+     */
+    public static final int CHUNK = 1 << 16;
+
+    /**
+     * The stream the file is written to.
+     */
+    private final DataOutputStream out;
+
+    /**
+     * The compressor, fed one scanline at a time.
+     */
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+
+    /**
+     * Size of the image, and the number of rows written so far.
+     */
+    private final int width, height;
+    private int rows;
+
+    /**
+     * A scanline (the filter byte and three bytes per pixel), and the buffer
+     * receiving compressed data.
+     */
+    private final byte[] line, buffer = new byte[CHUNK];
+
+    /**
+     * Constructor: writes the signature and header of a width x height RGB
+     * image.
+     *
+     * @param out     The stream to write to; it is closed by close().
+     * @param width   Width of the image in pixels.
+     * @param height  Height of the image in pixels.
+     */
+    public PngWriter(OutputStream out, int width, int height) throws IOException {
+	if (width < 1 || height < 1 || 3L*width + 1 > Integer.MAX_VALUE) {
+	    throw new RuntimeException("Invalid image size!");
+	}
+	this.out    = new DataOutputStream(out);
+	this.width  = width;
+	this.height = height;
+	this.line   = new byte[3*width + 1];
+
+	this.out.write(SIGNATURE);
+	ByteArrayOutputStream ihdr = new ByteArrayOutputStream();
+	DataOutputStream h = new DataOutputStream(ihdr);
+	h.writeInt(width);
+	h.writeInt(height);
+	h.writeByte(8);		// Bit depth.
+	h.writeByte(2);		// Colour type: RGB.
+	h.writeByte(0);		// Compression: deflate.
+	h.writeByte(0);		// Filter method.
+	h.writeByte(0);		// No interlacing.
+	chunk("IHDR", ihdr.toByteArray(), ihdr.size());
+    }
+
+    /**
+     * Appends rows of pixels to the image.
+     *
+     * @param rgb    Packed RGB values (as BufferedImage.getRGB() returns),
+     *               row after row; any alpha bits are ignored.
+     * @param count  The number of rows in rgb to write.
+     */
+    public void writeRows(int[] rgb, int count) throws IOException {
+	if (rows + count > height) {
+	    throw new RuntimeException("Too many rows for the image!");
+	}
+	for (int r = 0; r < count; r++) {
+	    line[0] = 0;
+	    for (int i = 0, k = r*width; i < width; i++, k++) {
+		int c = rgb[k];
+		line[3*i+1] = (byte) (c >> 16);
+		line[3*i+2] = (byte) (c >> 8);
+		line[3*i+3] = (byte) c;
+	    }
+	    deflater.setInput(line);
+	    while (!deflater.needsInput()) {
+		drain();
+	    }
+	}
+	rows += count;
+    }
+
+    /**
+     * Flushes the compressed data, writes the IEND chunk and closes the
+     * stream.
+     */
+    public void close() throws IOException {
+	try {
+	    if (rows != height) {
+		throw new RuntimeException("Image closed before all rows were written!");
+	    }
+	    deflater.finish();
+	    while (!deflater.finished()) {
+		drain();
+	    }
+	    chunk("IEND", buffer, 0);
+	} finally {
+	    deflater.end();
+	    out.close();
+	}
+    }
+
+    /**
+     * Compresses as much pending input as fits in the buffer, and writes it
+     * as an IDAT chunk.
+     */
+    private void drain() throws IOException {
+	int n = deflater.deflate(buffer);
+	if (n > 0) {
+	    chunk("IDAT", buffer, n);
+	}
+    }
+
+    /**
+     * Writes a chunk: its length, type, data and CRC.
+     */
+    private void chunk(String type, byte[] data, int length) throws IOException {
+	byte[] t = type.getBytes("US-ASCII");
+	CRC32 crc = new CRC32();
+	crc.update(t);
+	crc.update(data, 0, length);
+	out.writeInt(length);
+	out.write(t);
+	out.write(data, 0, length);
+	out.writeInt((int) crc.getValue());
+    }
+
+    // ========================================================
+    // Tester function.
+    // ========================================================
+
+    public static void main(String[] args) throws IOException {
+	// A colour gradient, written in bands of 7 rows and read back.
+	int w = 300, h = 200;
+	File file = new File("png-test.png");
+	try (PngWriter png = new PngWriter(new BufferedOutputStream(new FileOutputStream(file)), w, h)) {
+	    int[] band = new int[7*w];
+	    for (int j0 = 0; j0 < h; j0 += 7) {
+		int n = Math.min(7, h - j0);
+		for (int r = 0; r < n; r++) {
+		    for (int i = 0; i < w; i++) {
+			band[r*w + i] = (i * 255 / w) << 16 | ((j0 + r) * 255 / h) << 8 | 128;
+		    }
+		}
+		png.writeRows(band, n);
+	    }
+	}
+	java.awt.image.BufferedImage img = javax.imageio.ImageIO.read(file);
+	int errors = 0;
+	for (int j = 0; j < h; j++) {
+	    for (int i = 0; i < w; i++) {
+		int c = (i * 255 / w) << 16 | (j * 255 / h) << 8 | 128;
+		if ((img.getRGB(i, j) & 0xffffff) != c) {
+		    errors++;
+		}
+	    }
+	}
+	System.out.println("Read back " +img.getWidth()+ "x" +img.getHeight()+ ", " +errors+ " wrong pixels");
+	file.delete();
+    }
+}
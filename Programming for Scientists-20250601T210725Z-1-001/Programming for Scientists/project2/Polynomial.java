@@ -22,9 +22,36 @@ import java.util.Arrays;
 
 class Polynomial {
     /**
-     * An array storing the complex co-efficients of the polynomial.
+     * An array storing the complex co-efficients of the polynomial. For a
+     * sparse polynomial (see terms) this is null until an operation which
+     * needs the dense co-efficients builds it; see coefficients().
      */
-    Complex[] coeff;
+    volatile Complex[] coeff;
+
+    /**
+     * Unboxed copies of the real and imaginary parts of coeff. These are
+     * filled in by the constructors so that hot loops (e.g. in Newton) can
+     * run over the co-efficients without touching any Complex objects. Like
+     * coeff they are built lazily for a sparse polynomial, so other classes
+     * should read them through realCoeffs() and imagCoeffs().
+     */
+    volatile double[] coeffRe, coeffIm;
+
+    /**
+     * The exponents of the non-zero co-efficients in increasing order, if
+     * there are few enough of them that evaluating term by term (with powers
+     * of z formed by repeated squaring) is cheaper than Horner's rule;
+     * otherwise null. For example z^10000 - 1 has terms = {0, 10000}. Such a
+     * sparse polynomial stores only its terms, with their co-efficients in
+     * termRe and termIm, so that its size does not depend on its degree.
+     */
+    int[] terms;
+    double[] termRe, termIm;
+
+    /**
+     * The degree of the polynomial.
+     */
+    private int degree;
 
     // ========================================================
     // Constructor functions.
@@ -47,8 +74,20 @@ class Polynomial {
 	    j--;
 	}
 	this.coeff = Arrays.copyOfRange(coeff, 0, j);
+	unpack();
     }
     
+    /**
+     * Constructor from split arrays of real and imaginary parts, as used by
+     * the arithmetic operations below.
+     *
+     * @param re  Real parts of the co-efficients.
+     * @param im  Imaginary parts of the co-efficients.
+     */
+    Polynomial(double[] re, double[] im) {
+	this(toComplex(re, im));
+    }
+
     /**
      * Default constructor: sets the Polynomial to the zero polynomial.
      */
@@ -56,6 +95,221 @@ class Polynomial {
 	// Fills array with a zero.
 	Complex[] zero = {new Complex()};
 	this.coeff = zero;
+	unpack();
+    }
+
+    /**
+     * Packs split arrays of real and imaginary parts into an array of
+     * Complex.
+     */
+    private static Complex[] toComplex(double[] re, double[] im) {
+	Complex[] c = new Complex[Math.max(1, re.length)];
+	c[0] = new Complex();
+	for (int i = 0; i < re.length; i++) {
+	    c[i] = new Complex(re[i], im[i]);
+	}
+	return c;
+    }
+
+    /**
+     * Constructor for a sparse polynomial from its terms, which must be
+     * sorted by exponent, with non-zero co-efficients.
+     */
+    private Polynomial(int[] terms, double[] re, double[] im) {
+	this.terms  = terms;
+	this.termRe = re;
+	this.termIm = im;
+	this.degree = terms[terms.length - 1];
+    }
+
+    /**
+     * Copies the co-efficients into the primitive arrays coeffRe and coeffIm,
+     * or, if the polynomial is sparse enough, into terms, termRe and termIm
+     * instead.
+     */
+    private void unpack() {
+	double[] re = new double[coeff.length], im = new double[coeff.length];
+	int nonZero = 0;
+	for (int i = 0; i < coeff.length; i++) {
+	    re[i] = coeff[i].getReal();
+	    im[i] = coeff[i].getImag();
+	    if (re[i] != 0 || im[i] != 0) {
+		nonZero++;
+	    }
+	}
+	degree = coeff.length - 1;
+	if (!worthSparse(nonZero, degree)) {
+	    coeffIm = im;
+	    coeffRe = re;
+	    return;
+	}
+
+	terms  = new int[nonZero];
+	termRe = new double[nonZero];
+	termIm = new double[nonZero];
+	for (int i = 0, j = 0; i <= degree; i++) {
+	    if (re[i] != 0 || im[i] != 0) {
+		terms[j]  = i;
+		termRe[j] = re[i];
+		termIm[j] = im[i];
+		j++;
+	    }
+	}
+	coeff = null;
+    }
+
+    /**
+     * Decides whether a polynomial of degree n with the given number of
+     * non-zero terms is better stored sparsely: a sparse evaluation costs
+     * about 2 log2(n) + 2 multiplications per term, against one per
+     * co-efficient for Horner's rule.
+     */
+    private static boolean worthSparse(int nonZero, int n) {
+	return nonZero > 0 && (long) nonZero * (2*(32 - Integer.numberOfLeadingZeros(n)) + 2) < n + 1L;
+    }
+
+    /**
+     * Builds the dense co-efficient arrays of a sparse polynomial, for the
+     * operations which need them. coeffRe is written last, so that a thread
+     * which sees it also sees coeffIm and coeff.
+     */
+    private synchronized void densify() {
+	if (coeffRe != null) {
+	    return;
+	}
+	double[] re = new double[degree + 1], im = new double[degree + 1];
+	for (int j = 0; j < terms.length; j++) {
+	    re[terms[j]] = termRe[j];
+	    im[terms[j]] = termIm[j];
+	}
+	Complex[] c = new Complex[degree + 1];
+	for (int i = 0; i <= degree; i++) {
+	    c[i] = new Complex(re[i], im[i]);
+	}
+	coeff   = c;
+	coeffIm = im;
+	coeffRe = re;
+    }
+
+    /**
+     * Returns the real parts of all degree()+1 co-efficients, building them
+     * first if the polynomial is stored sparsely.
+     */
+    double[] realCoeffs() {
+	if (coeffRe == null) {
+	    densify();
+	}
+	return coeffRe;
+    }
+
+    /**
+     * Returns the imaginary parts of all degree()+1 co-efficients; see
+     * realCoeffs().
+     */
+    double[] imagCoeffs() {
+	if (coeffRe == null) {
+	    densify();
+	}
+	return coeffIm;
+    }
+
+    /**
+     * Returns all degree()+1 co-efficients; see realCoeffs().
+     */
+    Complex[] coefficients() {
+	if (coeffRe == null) {
+	    densify();
+	}
+	return coeff;
+    }
+
+    /**
+     * Creates a sparse polynomial from its non-zero terms. Only the terms
+     * are stored (unless the polynomial is dense enough for Horner's rule
+     * to be cheaper), so that for example z^1000000000 - 1 takes no more
+     * memory than z - 1.
+     *
+     * @param exponents  The exponents of the terms, which must be distinct
+     *                   and non-negative.
+     * @param coeff      The co-efficients of the terms.
+     * @return           The polynomial sum_j coeff[j] z^exponents[j].
+     */
+    public static Polynomial sparse(int[] exponents, Complex[] coeff) {
+	double[] re = new double[coeff.length], im = new double[coeff.length];
+	for (int j = 0; j < coeff.length; j++) {
+	    re[j] = coeff[j].getReal();
+	    im[j] = coeff[j].getImag();
+	}
+	return sparse(exponents, re, im);
+    }
+
+    /**
+     * Creates a sparse polynomial from the exponents of its terms and the
+     * real and imaginary parts of their co-efficients.
+     */
+    private static Polynomial sparse(int[] exponents, double[] re, double[] im) {
+	// Sort the terms by exponent, as (exponent, index) pairs packed into
+	// longs, dropping those with zero co-efficients.
+	int m = exponents.length;
+	long[] order = new long[m];
+	for (int j = 0; j < m; j++) {
+	    if (exponents[j] < 0) {
+		throw new RuntimeException("Exponents must be non-negative!");
+	    }
+	    order[j] = (long) exponents[j] << 32 | j;
+	}
+	Arrays.sort(order);
+	int[] e = new int[m];
+	double[] r = new double[m], i = new double[m];
+	int k = 0;
+	for (int j = 0; j < m; j++) {
+	    if (j > 0 && order[j] >>> 32 == order[j-1] >>> 32) {
+		throw new RuntimeException("Exponents must be distinct!");
+	    }
+	    int t = (int) order[j];
+	    if (re[t] != 0 || im[t] != 0) {
+		e[k] = (int) (order[j] >>> 32);
+		r[k] = re[t];
+		i[k] = im[t];
+		k++;
+	    }
+	}
+	if (k == 0) {
+	    return new Polynomial();
+	}
+
+	int n = e[k - 1];
+	if (!worthSparse(k, n)) {
+	    double[] dr = new double[n + 1], di = new double[n + 1];
+	    for (int j = 0; j < k; j++) {
+		dr[e[j]] = r[j];
+		di[e[j]] = i[j];
+	    }
+	    return new Polynomial(dr, di);
+	}
+	return new Polynomial(Arrays.copyOf(e, k), Arrays.copyOf(r, k), Arrays.copyOf(i, k));
+    }
+
+    /**
+     * Returns true if this polynomial is evaluated term by term rather than
+     * with Horner's rule; see terms.
+     */
+    public boolean isSparse() {
+	return terms != null;
+    }
+
+    /**
+     * Checks whether all of the co-efficients are real.
+     *
+     * @return True if every co-efficient has zero imaginary part.
+     */
+    public boolean isReal() {
+	for (double c : terms != null ? termIm : coeffIm) {
+	    if (c != 0) {
+		return false;
+	    }
+	}
+	return true;
     }
 
     // ========================================================
@@ -68,7 +322,18 @@ class Polynomial {
      * For example: (1.0+1.0i)+(1.0+2.0i)X+(1.0+3.0i)X^2
      */
     public String toString() {
+	if (terms != null) {
+	    String s = "(" +(terms[0] == 0 ? new Complex(termRe[0], termIm[0]) : new Complex())+ ")";
+	    for (int j = 0; j < terms.length; j++) {
+		if (terms[j] > 0) {
+		    s = s + "+(" +new Complex(termRe[j], termIm[j])+ ")z" + (terms[j] > 1 ? "^" + terms[j] : "");
+		}
+	    }
+	    return s;
+	}
+
 	// Always print constant. Print x coefficient if non-zero.
+	Complex[] coeff = this.coeff;
 	String coeffStr = "(" +coeff[0].toString()+ ")";
         if (coeff.length > 1 && coeff[1].abs() != 0) {
             coeffStr = coeffStr + "+(" +coeff[1].toString()+ ")z";
@@ -87,7 +352,7 @@ class Polynomial {
      * Returns the degree of this polynomial.
      */
     public int degree() {
-	return coeff.length - 1;
+	return degree;
     }
 
     /**
@@ -97,7 +362,14 @@ class Polynomial {
      * @return   The complex number P(z).
      */
     public Complex evaluate(Complex z) {
+	if (terms != null) {
+	    double[] t = new double[2];
+	    sparseTaylor(z.getReal(), z.getImag(), 0, t);
+	    return new Complex(t[0], t[1]);
+	}
+
 	// Recursive loop using given algorithm.
+	Complex[] coeff = this.coeff;
 	Complex ans = coeff[coeff.length - 1];
 	for (int i = degree() - 1; i >= 0; i--) {
 	    ans = coeff[i].add(z.multiply(ans));
@@ -105,6 +377,99 @@ class Polynomial {
 	return ans;
     }
     
+    /**
+     * Evaluates the polynomial at many points at once; see Multipoint.
+     *
+     * @param points  The points at which to evaluate the polynomial.
+     * @return        The values P(z) at each of the points.
+     */
+    public Complex[] evaluateAll(Complex[] points) {
+	int m = points.length;
+	double[] re = new double[m], im = new double[m];
+	for (int k = 0; k < m; k++) {
+	    re[k] = points[k].getReal();
+	    im[k] = points[k].getImag();
+	}
+	evaluateAll(re, im, re, im);
+	Complex[] values = new Complex[m];
+	for (int k = 0; k < m; k++) {
+	    values[k] = new Complex(re[k], im[k]);
+	}
+	return values;
+    }
+
+    /**
+     * Evaluates the polynomial at the points of a packed array.
+     *
+     * @param points  The points at which to evaluate the polynomial.
+     * @return        A new array holding the values P(z) at each point.
+     */
+    public ComplexArray evaluateAll(ComplexArray points) {
+	ComplexArray values = new ComplexArray(points.length());
+	evaluateAll(points.real(), points.imag(), values.real(), values.imag());
+	return values;
+    }
+
+    /**
+     * Evaluates the polynomial at the points re[k] + i*im[k], writing the
+     * values to outRe and outIm (which may be the same arrays as re and im).
+     *
+     * For m points this costs O(nm), by Horner's rule over blocks of points
+     * (see Multipoint.evaluate()); it is not quasi-linear, since the
+     * subproduct-tree algorithms are unstable in double precision. The
+     * exception is a power of two of points equally spaced on a circle
+     * about the origin, starting on the positive real axis, which are
+     * evaluated by one FFT in O((n + m) log m) (see Multipoint.circleRadius()).
+     *
+     * @param re     Real parts of the points.
+     * @param im     Imaginary parts of the points.
+     * @param outRe  Receives the real parts of the values.
+     * @param outIm  Receives the imaginary parts of the values.
+     */
+    public void evaluateAll(double[] re, double[] im, double[] outRe, double[] outIm) {
+	if (terms != null) {
+	    double[] t = new double[2];
+	    for (int k = 0; k < re.length; k++) {
+		sparseTaylor(re[k], im[k], 0, t);
+		outRe[k] = t[0];
+		outIm[k] = t[1];
+	    }
+	    return;
+	}
+	double r = outRe.length == re.length ? Multipoint.circleRadius(re, im, degree) : 0.0;
+	if (r > 0) {
+	    Multipoint.evaluateOnCircle(this, r, outRe, outIm);
+	    return;
+	}
+	Multipoint.evaluate(this, re, im, outRe, outIm);
+    }
+
+    /**
+     * Evaluates the polynomial at the m points r*exp(2 pi i k/m), k = 0, ...,
+     * m-1, by one FFT; see Multipoint.evaluateOnCircle().
+     *
+     * @param r  The (positive) radius of the circle.
+     * @param m  The number of points, a power of two.
+     * @return   The values, in order of k.
+     */
+    public ComplexArray evaluateOnCircle(double r, int m) {
+	if (m <= 0 || (m & (m - 1)) != 0) {
+	    throw new RuntimeException("Number of points on the circle must be a power of two!");
+	}
+	ComplexArray values = new ComplexArray(m);
+	if (terms != null) {
+	    double[] t = new double[2];
+	    for (int k = 0; k < m; k++) {
+		sparseTaylor(r*Math.cos(2*Math.PI*k/m), r*Math.sin(2*Math.PI*k/m), 0, t);
+		values.real()[k] = t[0];
+		values.imag()[k] = t[1];
+	    }
+	    return values;
+	}
+	Multipoint.evaluateOnCircle(this, r, values.real(), values.imag());
+	return values;
+    }
+
     /**
      * Calculate and returns the derivative of this polynomial.
      *
@@ -116,7 +481,23 @@ class Polynomial {
 	    return new Polynomial();
 	}
 
+	// Only the non-zero terms of a sparse polynomial need differentiating.
+	if (terms != null) {
+	    int start = terms[0] == 0 ? 1 : 0;
+	    int m = terms.length - start;
+	    int[] exps = new int[m];
+	    double[] re = new double[m], im = new double[m];
+	    for (int j = start; j < terms.length; j++) {
+		int e = terms[j];
+		exps[j - start] = e - 1;
+		re[j - start]   = termRe[j]*e;
+		im[j - start]   = termIm[j]*e;
+	    }
+	    return sparse(exps, re, im);
+	}
+
 	// Create new array with derivative coefficients.
+	Complex[] coeff = this.coeff;
         Complex[] coeffDeriv = new Complex[degree()];
         for (int i = 1; i < coeff.length; i++) {
             Complex pow = new Complex(i, 0);
@@ -124,7 +505,375 @@ class Polynomial {
 	}
 	return new Polynomial(coeffDeriv);
     }
+
+    /**
+     * Adds another polynomial to this one.
+     *
+     * @param q  The polynomial to add.
+     * @return   The sum of this polynomial with q.
+     */
+    public Polynomial add(Polynomial q) {
+	double[] aRe = realCoeffs(), aIm = imagCoeffs(), bRe = q.realCoeffs(), bIm = q.imagCoeffs();
+	int n = Math.max(aRe.length, bRe.length);
+	double[] re = new double[n], im = new double[n];
+	for (int i = 0; i < aRe.length; i++) {
+	    re[i] = aRe[i];
+	    im[i] = aIm[i];
+	}
+	for (int i = 0; i < bRe.length; i++) {
+	    re[i] += bRe[i];
+	    im[i] += bIm[i];
+	}
+	return new Polynomial(re, im);
+    }
+
+    /**
+     * Multiplies this polynomial by another. The algorithm (schoolbook,
+     * Karatsuba or FFT) is chosen by Convolution.multiply() according to the
+     * degrees involved.
+     *
+     * @param q  The polynomial to multiply by.
+     * @return   The product of this polynomial with q.
+     */
+    public Polynomial multiply(Polynomial q) {
+	double[][] c = Convolution.multiply(realCoeffs(), imagCoeffs(), q.realCoeffs(), q.imagCoeffs());
+	return new Polynomial(c[0], c[1]);
+    }
+
+    /**
+     * Raises this polynomial to a non-negative integer power by repeated
+     * squaring.
+     *
+     * @param e  The exponent.
+     * @return   This polynomial to the power e.
+     */
+    public Polynomial pow(int e) {
+	if (e < 0) {
+	    throw new RuntimeException("Exponent must be non-negative!");
+	}
+	Polynomial result = new Polynomial(new Complex[] { new Complex(1.0) });
+	Polynomial base   = this;
+	while (e > 0) {
+	    if ((e & 1) != 0) {
+		result = result.multiply(base);
+	    }
+	    e >>= 1;
+	    if (e > 0) {
+		base = base.multiply(base);
+	    }
+	}
+	return result;
+    }
+
+    /**
+     * Computes the composition P(q(z)) of this polynomial P with q. The
+     * co-efficients of P are split in half recursively, so that
+     * P = P_lo + z^h P_hi gives P(q) = P_lo(q) + q^h P_hi(q), with the powers
+     * q^h (h a power of two) computed once. Together with fast
+     * multiplication this avoids the quadratic cost of Horner's rule.
+     *
+     * @param q  The inner polynomial.
+     * @return   The polynomial P(q(z)).
+     */
+    public Polynomial compose(Polynomial q) {
+	// The top split of compose(0, degree + 1, ...) uses q^(2^k) with
+	// 2^k <= degree, so the powers up to that one are needed (and q
+	// itself, which a constant never uses, keeps the array non-empty).
+	int levels = Math.max(1, 32 - Integer.numberOfLeadingZeros(degree));
+	double[][][] powers = new double[levels][][];
+	powers[0] = new double[][] { q.realCoeffs(), q.imagCoeffs() };
+	for (int k = 1; k < levels; k++) {
+	    powers[k] = Convolution.multiply(powers[k-1][0], powers[k-1][1],
+					     powers[k-1][0], powers[k-1][1]);
+	}
+	double[][] c = compose(0, degree + 1, powers);
+	return new Polynomial(c[0], c[1]);
+    }
+
+    /**
+     * Composes the slice coeff[lo, lo+len) (as a polynomial in its own
+     * right) with q, where powers[k] holds q^(2^k).
+     */
+    private double[][] compose(int lo, int len, double[][][] powers) {
+	if (len == 1) {
+	    return new double[][] { { realCoeffs()[lo] }, { imagCoeffs()[lo] } };
+	}
+	int k = 31 - Integer.numberOfLeadingZeros(len - 1);
+	int h = 1 << k;
+	double[][] low  = compose(lo, h, powers);
+	double[][] high = compose(lo + h, len - h, powers);
+	double[][] c    = Convolution.multiply(high[0], high[1], powers[k][0], powers[k][1]);
+	for (int i = 0; i < low[0].length; i++) {
+	    c[0][i] += low[0][i];
+	    c[1][i] += low[1][i];
+	}
+	return c;
+    }
+
+    /**
+     * Divides this polynomial by another, with remainder.
+     *
+     * @param d  The (non-zero) divisor.
+     * @return   An array {q, r} such that this = q*d + r and
+     *           r.degree() < d.degree() (or r is zero).
+     */
+    public Polynomial[] divideAndRemainder(Polynomial d) {
+	double[] aRe = realCoeffs(), aIm = imagCoeffs(), dRe = d.realCoeffs(), dIm = d.imagCoeffs();
+	int n = aRe.length - 1, m = dRe.length - 1;
+	double br = dRe[m], bi = dIm[m], b2 = br*br + bi*bi;
+	if (b2 == 0) {
+	    throw new RuntimeException("Division by the zero polynomial!");
+	}
+	if (n < m) {
+	    return new Polynomial[] { new Polynomial(), this };
+	}
+	if (Math.min(m, n - m) >= Convolution.FFT_THRESHOLD) {
+	    double[][] qr = Convolution.divideAndRemainder(aRe, aIm, dRe, dIm);
+	    return new Polynomial[] { new Polynomial(qr[0], qr[1]), new Polynomial(qr[2], qr[3]) };
+	}
+
+	// Long division, working down from the leading co-efficient.
+	double[] rRe = aRe.clone(), rIm = aIm.clone();
+	double[] qRe = new double[n - m + 1], qIm = new double[n - m + 1];
+	for (int i = n - m; i >= 0; i--) {
+	    double xr = rRe[i + m], xi = rIm[i + m];
+	    double cr = (xr*br + xi*bi)/b2, ci = (xi*br - xr*bi)/b2;
+	    qRe[i] = cr;
+	    qIm[i] = ci;
+	    for (int j = 0; j <= m; j++) {
+		rRe[i + j] -= cr*dRe[j] - ci*dIm[j];
+		rIm[i + j] -= cr*dIm[j] + ci*dRe[j];
+	    }
+	    rRe[i + m] = rIm[i + m] = 0.0;
+	}
+	return new Polynomial[] {
+	    new Polynomial(qRe, qIm),
+	    new Polynomial(Arrays.copyOf(rRe, Math.max(1, m)), Arrays.copyOf(rIm, Math.max(1, m)))
+	};
+    }
+
+    /**
+     * Computes all of the roots of this polynomial simultaneously using the
+     * Aberth-Ehrlich method; see the Aberth class.
+     *
+     * @return An array of degree() roots, repeated according to
+     *         multiplicity.
+     */
+    public Complex[] roots() {
+	return Aberth.roots(this);
+    }
+
+    /**
+     * Finds the distinct real roots of a polynomial with real co-efficients,
+     * each with an interval isolating it; see Sturm. This is much cheaper
+     * than roots() when only the real roots are needed.
+     *
+     * @return The real roots in increasing order.
+     */
+    public RootInterval[] realRoots() {
+	return Sturm.isolate(this);
+    }
+
+    /**
+     * Counts the roots, with multiplicity, inside the rectangle with opposite
+     * corners x0+i*y0 and x1+i*y1 by the argument principle; see Contour.
+     *
+     * @return The number of roots, or -1 if a root lies on the boundary.
+     */
+    public int countRoots(double x0, double y0, double x1, double y1) {
+	return Contour.count(this, x0, y0, x1, y1);
+    }
+
+    /**
+     * Finds the roots, with multiplicity, inside the rectangle with opposite
+     * corners x0+i*y0 and x1+i*y1 by a quadtree search; see Contour.
+     *
+     * @return The roots inside the rectangle.
+     */
+    public Complex[] rootsIn(double x0, double y0, double x1, double y1) {
+	return Contour.roots(this, x0, y0, x1, y1);
+    }
+
+    /**
+     * Evaluates the polynomial and its first k derivatives at the point
+     * z = re + i*im using a single extended Horner pass over the
+     * co-efficients, i.e. without forming any derivative polynomials.
+     *
+     * The results are written to the caller-supplied buffer out, which must
+     * have length at least 2*(k+1): P^(m)(z) is stored as out[2*m] (real
+     * part) and out[2*m+1] (imaginary part) for m = 0, ..., k.
+     *
+     * @param re   Real part of the point z.
+     * @param im   Imaginary part of the point z.
+     * @param k    The highest derivative to compute.
+     * @param out  Buffer receiving P(z), P'(z), ..., P^(k)(z).
+     */
+    public void taylor(double re, double im, int k, double[] out) {
+	if (k < 0 || out.length < 2*(k+1)) {
+	    throw new RuntimeException("Taylor buffer must hold k+1 complex numbers!");
+	}
+	int n = degree;
+	if (terms != null) {
+	    sparseTaylor(re, im, k, out);
+	    return;
+	}
+	double[] coeffRe = this.coeffRe, coeffIm = this.coeffIm;
+
+	// Common case used by Newton: P and P' only.
+	if (k == 1) {
+	    double pr = coeffRe[n], pi = coeffIm[n], dr = 0.0, di = 0.0;
+	    for (int i = n - 1; i >= 0; i--) {
+		double t = re*dr - im*di + pr;
+		di = re*di + im*dr + pi;
+		dr = t;
+		t  = re*pr - im*pi + coeffRe[i];
+		pi = re*pi + im*pr + coeffIm[i];
+		pr = t;
+	    }
+	    out[0] = pr; out[1] = pi;
+	    out[2] = dr; out[3] = di;
+	    return;
+	}
+
+	// b_m is accumulated in out[2m], out[2m+1]; after the loop we have
+	// b_m = P^(m)(z)/m!.
+	for (int m = 0; m <= k; m++) {
+	    out[2*m] = out[2*m+1] = 0.0;
+	}
+	for (int i = n; i >= 0; i--) {
+	    for (int m = Math.min(k, n - i); m >= 1; m--) {
+		double br = out[2*m], bi = out[2*m+1];
+		out[2*m]   = re*br - im*bi + out[2*m-2];
+		out[2*m+1] = re*bi + im*br + out[2*m-1];
+	    }
+	    double br = out[0], bi = out[1];
+	    out[0] = re*br - im*bi + coeffRe[i];
+	    out[1] = re*bi + im*br + coeffIm[i];
+	}
+
+	// Scale by m! to obtain the derivatives.
+	double fact = 1.0;
+	for (int m = 2; m <= k; m++) {
+	    fact *= m;
+	    out[2*m]   *= fact;
+	    out[2*m+1] *= fact;
+	}
+    }
     
+    /**
+     * Sparse version of taylor(): sums the terms
+     *
+     *   P^(m)(z) = sum_e a_e e(e-1)...(e-m+1) z^(e-m)
+     *
+     * over the exponents e in terms. The powers z^(e-k) are formed as a
+     * chain, each from the previous one times z^(gap) computed by repeated
+     * squaring, so that the cost is O(terms * (log(degree) + k)).
+     */
+    private void sparseTaylor(double re, double im, int k, double[] out) {
+	for (int m = 0; m <= k; m++) {
+	    out[2*m] = out[2*m+1] = 0.0;
+	}
+
+	// cr + i ci = z^b, where b = max(e - k, 0) for the current term.
+	double cr = 1.0, ci = 0.0;
+	int b = 0;
+	for (int j = 0; j < terms.length; j++) {
+	    int e = terms[j];
+	    int base = Math.max(e - k, 0);
+	    double sr = re, si = im;
+	    for (int g = base - b; g > 0; g >>= 1) {
+		double t;
+		if ((g & 1) != 0) {
+		    t  = cr*sr - ci*si;
+		    ci = cr*si + ci*sr;
+		    cr = t;
+		}
+		t  = sr*sr - si*si;
+		si = 2*sr*si;
+		sr = t;
+	    }
+	    b = base;
+
+	    // Walk m down from min(k, e) to 0, multiplying the power by z.
+	    double pr = cr, pi = ci;
+	    for (int m = Math.min(k, e); m >= 0; m--) {
+		double ff = 1.0;
+		for (int l = 0; l < m; l++) {
+		    ff *= e - l;
+		}
+		double ar = termRe[j]*ff, ai = termIm[j]*ff;
+		out[2*m]   += ar*pr - ai*pi;
+		out[2*m+1] += ar*pi + ai*pr;
+		double t = pr*re - pi*im;
+		pi = pr*im + pi*re;
+		pr = t;
+	    }
+	}
+    }
+
+    /**
+     * Double-double version of taylor(), used by Newton for deep zooms: the
+     * same Horner scheme, carried out in DDComplex arithmetic. The
+     * co-efficients themselves are doubles, so they are exact in DD.
+     * Sparse polynomials are evaluated term by term, with the powers of z
+     * formed by repeated squaring.
+     *
+     * @param z  The point at which to evaluate.
+     * @param k  The highest derivative required (k >= 0).
+     * @return   An array holding P(z), P'(z), ..., P^(k)(z).
+     */
+    public DDComplex[] taylor(DDComplex z, int k) {
+	if (k < 0) {
+	    throw new RuntimeException("Taylor order must be non-negative!");
+	}
+	int n = degree;
+	DDComplex[] b = new DDComplex[k+1];
+	for (int m = 0; m <= k; m++) {
+	    b[m] = new DDComplex(0.0, 0.0);
+	}
+	if (terms != null) {
+	    for (int j = 0; j < terms.length; j++) {
+		int e = terms[j];
+		DDComplex a = new DDComplex(termRe[j], termIm[j]);
+		double ff = 1.0;
+		for (int m = 0; m <= Math.min(k, e); m++) {
+		    b[m] = b[m].add(a.multiply(ff).multiply(pow(z, e - m)));
+		    ff *= e - m;
+		}
+	    }
+	    return b;
+	}
+	Complex[] coeff = this.coeff;
+	for (int i = n; i >= 0; i--) {
+	    for (int m = Math.min(k, n - i); m >= 1; m--) {
+		b[m] = b[m].multiply(z).add(b[m-1]);
+	    }
+	    b[0] = b[0].multiply(z).add(coeff[i]);
+	}
+
+	// Scale by m! to obtain the derivatives.
+	double fact = 1.0;
+	for (int m = 2; m <= k; m++) {
+	    fact *= m;
+	    b[m] = b[m].multiply(fact);
+	}
+	return b;
+    }
+
+    /**
+     * Raises z to a non-negative integer power by repeated squaring.
+     */
+    private static DDComplex pow(DDComplex z, int e) {
+	DDComplex r = new DDComplex(1.0, 0.0);
+	for (; e > 0; e >>= 1) {
+	    if ((e & 1) != 0) {
+		r = r.multiply(z);
+	    }
+	    z = z.multiply(z);
+	}
+	return r;
+    }
+
     // ========================================================
     // Tester function.
     // ========================================================
@@ -153,5 +902,24 @@ class Polynomial {
 
 	System.out.println("Complex number Z =        " +Z);
 	System.out.println("Evaluate at Z =           " +P.evaluate(Z));
+
+	double[] t = new double[6];
+	P.taylor(Z.getReal(), Z.getImag(), 2, t);
+	Polynomial S = sparse(new int[] { 0, 10000 }, new Complex[] { new Complex(-1.0), new Complex(1.0) });
+	System.out.println("z^10000 - 1 sparse =      " +S.isSparse());
+	System.out.println("Evaluate at 1+1e-5 =      " +S.evaluate(new Complex(1.0 + 1.0e-5)));
+	System.out.println("Derivative =              " +S.derivative());
+	Polynomial H = sparse(new int[] { 1 << 30, 0 }, new Complex[] { new Complex(1.0), new Complex(-1.0) });
+	System.out.println("z^(2^30) - 1 at -1 =      " +H.evaluate(new Complex(-1.0))+ ", degree " +H.derivative().degree());
+	System.out.println("P at {Z, 2Z, 3Z} =        "
+			   +P.evaluateAll(new ComplexArray(new Complex[] { Z, Z.multiply(2.0), Z.multiply(3.0) })));
+
+	Polynomial[] qr = P.divideAndRemainder(P.derivative());
+	System.out.println("P*P' =                    " +P.multiply(P.derivative()));
+	System.out.println("P^2 =                     " +P.pow(2));
+	System.out.println("P(P') =                   " +P.compose(P.derivative()));
+	System.out.println("P / P' =                  " +qr[0]+ " rem " +qr[1]);
+	System.out.println("Taylor at Z (P,P',P'') =  " +new Complex(t[0], t[1])
+			   + ", " +new Complex(t[2], t[3])+ ", " +new Complex(t[4], t[5]));
     }
 }
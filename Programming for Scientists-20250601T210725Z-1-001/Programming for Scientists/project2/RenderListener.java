@@ -0,0 +1,20 @@
+/*
+ * PROJECT II: RenderListener.java
+ *
+ * Receives the intermediate images of NewtonFractal.createProgressive(),
+ * which renders on successively finer lattices of pixels. After each pass
+ * the fractal image holds a blocky preview of the whole picture, which the
+ * listener can display (e.g. via NewtonFractal.getImage()).
+ */
+
+interface RenderListener {
+    /**
+     * Called on the rendering thread after each pass.
+     *
+     * @param fractal  The fractal being rendered.
+     * @param step     The spacing of the lattice of pixels computed so far:
+     *                 NewtonFractal.COARSEST for the first pass, halving
+     *                 down to 1 for the finished image.
+     */
+    void passComplete(NewtonFractal fractal, int step);
+}
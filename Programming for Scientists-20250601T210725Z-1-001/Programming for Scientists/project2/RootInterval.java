@@ -0,0 +1,92 @@
+/*
+ * PROJECT II: RootInterval.java
+ *
+ * An immutable record of one real root of a real Polynomial, as found by
+ * Sturm.isolate(): an interval [lower, upper] which, according to the Sturm
+ * sequence, contains exactly one distinct real root, together with that
+ * root polished to full precision.
+ */
+
+final class RootInterval {
+    /**
+     * End points of the isolating interval.
+     */
+    private final double lower, upper;
+
+    /**
+     * The root, polished within [lower, upper].
+     */
+    private final double root;
+
+    /**
+     * The number of distinct roots in the interval. This is 1 unless the
+     * interval could not be split any further, i.e. for roots closer
+     * together than the precision of a double.
+     */
+    private final int count;
+
+    // ========================================================
+    // Constructor functions.
+    // ========================================================
+
+    /**
+     * Constructor: initialises all fields.
+     *
+     * @param lower  Lower end of the isolating interval.
+     * @param upper  Upper end of the isolating interval.
+     * @param root   The polished root.
+     * @param count  The number of distinct roots in the interval.
+     */
+    public RootInterval(double lower, double upper, double root, int count) {
+	this.lower = lower;
+	this.upper = upper;
+	this.root  = root;
+	this.count = count;
+    }
+
+    // ========================================================
+    // Accessor methods.
+    // ========================================================
+
+    /**
+     * Returns the lower end of the isolating interval.
+     */
+    public double getLower() {
+	return lower;
+    }
+
+    /**
+     * Returns the upper end of the isolating interval.
+     */
+    public double getUpper() {
+	return upper;
+    }
+
+    /**
+     * Returns the polished root.
+     */
+    public double getRoot() {
+	return root;
+    }
+
+    /**
+     * Returns the number of distinct roots in the interval, which is 1 for
+     * a properly isolated root.
+     */
+    public int getCount() {
+	return count;
+    }
+
+    /**
+     * Converts the result to a string.
+     *
+     * @return A string describing the root and its interval.
+     */
+    public String toString() {
+	String s = root+ " in [" +lower+ ", " +upper+ "]";
+	if (count != 1) {
+	    s += " (" +count+ " roots)";
+	}
+	return s;
+    }
+}
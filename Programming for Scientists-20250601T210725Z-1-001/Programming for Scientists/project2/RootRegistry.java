@@ -0,0 +1,91 @@
+/*
+ * PROJECT II: RootRegistry.java
+ *
+ * A table of distinct roots which may be shared by the threads rendering a
+ * fractal. Each thread looks up the roots it converges to with find(), which
+ * takes no lock and reads a snapshot of the table; only a root which is not
+ * yet in the table takes the lock, in register(). Since a polynomial has
+ * only a handful of roots, almost every lookup is lock-free.
+ *
+ * The indices handed out depend on which thread reaches a root first, so
+ * they are provisional: NewtonFractal renumbers them in scan order after
+ * rendering so that the colours are the same on every run.
+ */
+
+import java.util.Arrays;
+
+final class RootRegistry {
+    /**
+     * Real and imaginary parts of the roots, replaced (never modified) when
+     * a root is added, so that readers always see a consistent snapshot.
+     */
+    private volatile double[] re = new double[0], im = new double[0];
+
+    /**
+     * The distance within which two roots are considered the same.
+     */
+    private final double tol;
+
+    /**
+     * Constructor: creates an empty registry.
+     *
+     * @param tol  The distance within which two roots are considered the
+     *             same, as in NewtonFractal.findRoot().
+     */
+    public RootRegistry(double tol) {
+	this.tol = tol;
+    }
+
+    /**
+     * Returns the number of roots registered so far.
+     */
+    public int size() {
+	return re.length;
+    }
+
+    /**
+     * Returns the index of the root x+iy, registering it if it is new.
+     *
+     * @param x  Real part of the root.
+     * @param y  Imaginary part of the root.
+     * @return   The (provisional) index of the root.
+     */
+    public int indexOf(double x, double y) {
+	int k = find(re, im, x, y);
+	return k >= 0 ? k : register(x, y);
+    }
+
+    /**
+     * Adds the root x+iy, unless another thread has added it since the
+     * caller looked.
+     */
+    private synchronized int register(double x, double y) {
+	double[] r = re, i = im;
+	int k = find(r, i, x, y);
+	if (k >= 0) {
+	    return k;
+	}
+	int n = r.length;
+	double[] nr = Arrays.copyOf(r, n + 1), ni = Arrays.copyOf(i, n + 1);
+	nr[n] = x;
+	ni[n] = y;
+	// Publish im before re: find() reads re first, so it never sees more
+	// real parts than imaginary ones.
+	im = ni;
+	re = nr;
+	return n;
+    }
+
+    /**
+     * Looks up x+iy in the snapshot (r, i).
+     */
+    private int find(double[] r, double[] i, double x, double y) {
+	for (int k = 0; k < r.length; k++) {
+	    double dx = x - r[k], dy = y - i[k];
+	    if (Math.sqrt(dx*dx + dy*dy) < tol) {
+		return k;
+	    }
+	}
+	return -1;
+    }
+}
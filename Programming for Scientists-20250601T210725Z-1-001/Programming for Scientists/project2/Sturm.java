@@ -0,0 +1,329 @@
+/*
+ * PROJECT II: Sturm.java
+ *
+ * This class finds the real roots of a Polynomial with real co-efficients
+ * using Sturm sequences. The sequence
+ *
+ *   p_0 = P,  p_1 = P',  p_(k+1) = -rem(p_(k-1), p_k),
+ *
+ * has the property that, if V(x) is the number of sign changes in
+ * p_0(x), p_1(x), ..., then the number of distinct real roots of P in
+ * (a, b] is V(a) - V(b). Starting from an interval containing every real
+ * root (Cauchy's bound), intervals are bisected until each contains exactly
+ * one root, and the root is then polished within its interval by Newton-
+ * Raphson safeguarded with bisection.
+ *
+ * The whole search is one-dimensional, so it is far cheaper than locating
+ * the real roots among the complex ones found by a search of the plane.
+ * The sequence is computed in floating point, so the counts (and hence the
+ * intervals) are reliable for well-separated roots of moderate degree, but
+ * not for clusters of roots that the co-efficients cannot resolve. Each
+ * interval is therefore checked against P itself before it is returned.
+ */
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+class Sturm {
+    /**
+     * Size, relative to the largest term cancelled in computing it, below
+     * which a co-efficient of a remainder is taken to be zero.
+     */
+    public static final double ZERO = 1.0e-10;
+
+    /**
+     * Relative width below which an interval is not bisected any further,
+     * even if it still holds more than one root.
+     */
+    public static final double MINWIDTH = 1.0e-14;
+
+    /**
+     * The maximum number of safeguarded Newton-Raphson steps used to polish
+     * each root.
+     */
+    public static final int MAXITER = 100;
+
+    /**
+     * Finds all distinct real roots of p, in increasing order.
+     *
+     * @param p  A polynomial with real co-efficients (see
+     *           Polynomial.isReal()).
+     * @return   An isolating interval and polished root for each distinct
+     *           real root of p.
+     */
+    public static RootInterval[] isolate(Polynomial p) {
+	if (!p.isReal()) {
+	    throw new RuntimeException("Polynomial must have real co-efficients!");
+	}
+	int n = p.degree();
+	ArrayList<RootInterval> roots = new ArrayList<RootInterval>();
+	if (n == 0) {
+	    return new RootInterval[0];
+	}
+
+	double[][] seq = sequence(p.realCoeffs());
+
+	// Cauchy's bound: every root satisfies |x| < 1 + max |a_i / a_n|.
+	double[] a = p.realCoeffs();
+	double bound = 0.0;
+	for (int i = 0; i < n; i++) {
+	    bound = Math.max(bound, Math.abs(a[i] / a[n]));
+	}
+	bound = 1.0 + bound;
+
+	// Bisect depth first, left half before right, so that the roots come
+	// out in increasing order.
+	double lo = -bound, hi = bound;
+	int vLo = variations(seq, lo), vHi = variations(seq, hi);
+	ArrayDeque<double[]> stack = new ArrayDeque<double[]>();
+	stack.push(new double[] { lo, hi, vLo, vHi });
+	while (!stack.isEmpty()) {
+	    double[] iv = stack.pop();
+	    lo  = iv[0];
+	    hi  = iv[1];
+	    int count = (int) iv[2] - (int) iv[3];
+	    if (count == 0) {
+		continue;
+	    }
+	    double mid = split(seq[0], lo, hi);
+	    if (count == 1 || hi - lo <= MINWIDTH * Math.max(1.0, Math.abs(mid))) {
+		double x = polish(a, lo, hi);
+		if (verified(a, lo, hi, x)) {
+		    roots.add(new RootInterval(lo, hi, x, count));
+		}
+		continue;
+	    }
+	    int vMid = variations(seq, mid);
+	    stack.push(new double[] { mid, hi, vMid, iv[3] });
+	    stack.push(new double[] { lo, mid, iv[2], vMid });
+	}
+	return roots.toArray(new RootInterval[roots.size()]);
+    }
+
+    /**
+     * Computes the Sturm sequence of the polynomial with co-efficients a.
+     * Each member is scaled so that its largest co-efficient has modulus 1,
+     * which does not change any signs but keeps the remainders from
+     * overflowing or underflowing.
+     */
+    private static double[][] sequence(double[] a) {
+	ArrayList<double[]> seq = new ArrayList<double[]>();
+	double[] d = new double[a.length - 1];
+	for (int i = 1; i < a.length; i++) {
+	    d[i-1] = i * a[i];
+	}
+	seq.add(normalise(a.clone()));
+	seq.add(normalise(d));
+
+	while (seq.get(seq.size() - 1).length > 1) {
+	    double[] r = remainder(seq.get(seq.size() - 2), seq.get(seq.size() - 1));
+	    if (r.length == 0) {
+		// The previous member is gcd(P, P'): P has multiple roots.
+		// The sign variations still count distinct roots.
+		break;
+	    }
+	    for (int i = 0; i < r.length; i++) {
+		r[i] = -r[i];
+	    }
+	    seq.add(normalise(r));
+	}
+	return seq.toArray(new double[seq.size()][]);
+    }
+
+    /**
+     * Returns the remainder of u divided by v by long division, with the
+     * leading co-efficients which are zero up to round-off trimmed off. A
+     * co-efficient counts as zero when it is at most ZERO times the largest
+     * term that went into it, since that is the scale of the cancellation;
+     * an absolute threshold would depend on how large the quotient is.
+     */
+    private static double[] remainder(double[] u, double[] v) {
+	double[] r = u.clone();
+	double[] size = new double[u.length];
+	for (int i = 0; i < u.length; i++) {
+	    size[i] = Math.abs(u[i]);
+	}
+	int m = v.length - 1;
+	for (int k = u.length - 1; k >= m; k--) {
+	    double q = r[k] / v[m];
+	    for (int j = 0; j <= m; j++) {
+		r[k-m+j] -= q * v[j];
+		size[k-m+j] = Math.max(size[k-m+j], Math.abs(q * v[j]));
+	    }
+	}
+	int len = m;
+	while (len > 0 && Math.abs(r[len-1]) <= ZERO * size[len-1]) {
+	    len--;
+	}
+	return Arrays.copyOf(r, len);
+    }
+
+    /**
+     * Scales a so that its largest co-efficient has modulus 1.
+     */
+    private static double[] normalise(double[] a) {
+	double max = 0.0;
+	for (double c : a) {
+	    max = Math.max(max, Math.abs(c));
+	}
+	for (int i = 0; i < a.length; i++) {
+	    a[i] /= max;
+	}
+	return a;
+    }
+
+    /**
+     * Evaluates the real polynomial a at x by Horner's rule.
+     */
+    private static double evaluate(double[] a, double x) {
+	double s = a[a.length - 1];
+	for (int i = a.length - 2; i >= 0; i--) {
+	    s = s*x + a[i];
+	}
+	return s;
+    }
+
+    /**
+     * Counts the sign changes in the Sturm sequence at x, ignoring zeros.
+     */
+    private static int variations(double[][] seq, double x) {
+	int v = 0;
+	double last = 0.0;
+	for (double[] s : seq) {
+	    double y = evaluate(s, x);
+	    if (y != 0) {
+		if (last != 0 && (y > 0) != (last > 0)) {
+		    v++;
+		}
+		last = y;
+	    }
+	}
+	return v;
+    }
+
+    /**
+     * Checks an isolating interval against P itself, in case round-off in
+     * the sequence produced a spurious count: either P changes sign on
+     * [lo, hi], or (for a root of even multiplicity) P vanishes at the
+     * polished root x up to the round-off of evaluating it.
+     */
+    private static boolean verified(double[] a, double lo, double hi, double x) {
+	if ((evaluate(a, lo) > 0) != (evaluate(a, hi) > 0)) {
+	    return true;
+	}
+	double ax = Math.abs(x), bound = 0.0;
+	for (int i = a.length - 1; i >= 0; i--) {
+	    bound = bound*ax + Math.abs(a[i]);
+	}
+	return Math.abs(evaluate(a, x)) <= 4 * a.length * Math.ulp(1.0) * bound;
+    }
+
+    /**
+     * Returns a point near the middle of [lo, hi] at which P is non-zero,
+     * since the Sturm counts assume the end points are not roots.
+     */
+    private static double split(double[] p, double lo, double hi) {
+	double mid = 0.5*(lo + hi);
+	for (int k = 1; k < 8 && evaluate(p, mid) == 0; k++) {
+	    mid = lo + (hi - lo) * (0.5 + k/32.0);
+	}
+	return mid;
+    }
+
+    /**
+     * Polishes the root of the polynomial a in [lo, hi] by Newton-Raphson,
+     * falling back on bisection whenever a step would leave the bracket. If
+     * P does not change sign on [lo, hi] (a root of even multiplicity) the
+     * bracket cannot be updated, and Newton-Raphson steps are simply kept
+     * within it; such roots are ill-conditioned and are only found to about
+     * half of double precision.
+     */
+    private static double polish(double[] a, double lo, double hi) {
+	double[] d = new double[a.length - 1];
+	for (int i = 1; i < a.length; i++) {
+	    d[i-1] = i * a[i];
+	}
+	double fLo = evaluate(a, lo);
+	boolean bracket = (fLo > 0) != (evaluate(a, hi) > 0);
+
+	double x = 0.5*(lo + hi);
+	for (int it = 0; it < MAXITER; it++) {
+	    double f = evaluate(a, x);
+	    if (f == 0) {
+		break;
+	    }
+	    if (bracket) {
+		if ((f > 0) == (fLo > 0)) {
+		    lo = x;
+		} else {
+		    hi = x;
+		}
+	    }
+	    double df = evaluate(d, x);
+	    double y  = df == 0 ? x : x - f/df;
+	    if (!(y > lo && y < hi)) {
+		y = bracket ? 0.5*(lo + hi) : Math.max(lo, Math.min(hi, y));
+	    }
+	    if (y == x || Math.abs(y - x) <= 2*Math.ulp(x)) {
+		x = y;
+		break;
+	    }
+	    x = y;
+	}
+	return x;
+    }
+
+    // ========================================================
+    // Tester function.
+    // ========================================================
+
+    public static void main(String[] args) {
+	// (x-1)(x-2)(x-3)(x^2+1): three simple real roots.
+	Polynomial p = new Polynomial(new Complex[] { new Complex(-6.0), new Complex(11.0), new Complex(-12.0),
+						      new Complex(12.0), new Complex(-6.0), new Complex(1.0) });
+	System.out.println("P = " +p);
+	for (RootInterval r : p.realRoots()) {
+	    System.out.println("  " +r);
+	}
+
+	// (x-1)^2 (x+2): a double root.
+	Polynomial q = new Polynomial(new Complex[] { new Complex(2.0), new Complex(-3.0),
+						      new Complex(0.0), new Complex(1.0) });
+	System.out.println("Q = " +q);
+	for (RootInterval r : q.realRoots()) {
+	    System.out.println("  " +r);
+	}
+
+	// Chebyshev polynomial T_16, whose roots are cos((2k-1) pi / 32),
+	// timed against finding all complex roots with Aberth.
+	Polynomial t0 = new Polynomial(new Complex[] { new Complex(1.0) });
+	Polynomial t1 = new Polynomial(new Complex[] { new Complex(0.0), new Complex(1.0) });
+	Polynomial x2 = new Polynomial(new Complex[] { new Complex(0.0), new Complex(2.0) });
+	for (int k = 2; k <= 16; k++) {
+	    Polynomial t2 = x2.multiply(t1).add(t0.multiply(new Polynomial(new Complex[] { new Complex(-1.0) })));
+	    t0 = t1;
+	    t1 = t2;
+	}
+	RootInterval[] cheb = t1.realRoots();
+	double maxErr = 0.0;
+	for (int k = 0; k < cheb.length; k++) {
+	    double exact = Math.cos((2*(cheb.length - k) - 1) * Math.PI / 32);
+	    maxErr = Math.max(maxErr, Math.abs(cheb[k].getRoot() - exact));
+	}
+	System.out.println("T_16: " +cheb.length+ " real roots, max error " +maxErr);
+
+	int repeats = 200;
+	long start = System.nanoTime();
+	for (int k = 0; k < repeats; k++) {
+	    t1.realRoots();
+	}
+	double sturmMs = (System.nanoTime() - start) / 1.0e6;
+	start = System.nanoTime();
+	for (int k = 0; k < repeats; k++) {
+	    t1.roots();
+	}
+	double aberthMs = (System.nanoTime() - start) / 1.0e6;
+	System.out.println("Sturm: " +sturmMs+ " ms, Aberth: " +aberthMs+ " ms (" +repeats+ " runs)");
+    }
+}